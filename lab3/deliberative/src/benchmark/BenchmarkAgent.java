@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import logist.agent.Agent;
+import logist.agent.AgentStatistics;
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+
+/**
+ * An agent with a single vehicle, whose properties are given as strings (as
+ * in agents.xml).
+ */
+class BenchmarkAgent implements Agent {
+
+	private final List<Vehicle> vehicles;
+	private final Map<String, String> properties;
+
+	BenchmarkAgent(Vehicle vehicle, Map<String, String> properties) {
+		this.vehicles = Collections.singletonList(vehicle);
+		this.properties = properties;
+	}
+
+	@Override
+	public int id() {
+		return 0;
+	}
+
+	@Override
+	public List<Vehicle> vehicles() {
+		return vehicles;
+	}
+
+	@Override
+	public TaskSet getTasks() {
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T readProperty(String name, Class<T> type, T defaultValue) {
+		String value = properties.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		if (type == Integer.class) {
+			return (T) Integer.valueOf(value);
+		} else if (type == Long.class) {
+			return (T) Long.valueOf(value);
+		} else if (type == Double.class) {
+			return (T) Double.valueOf(value);
+		} else if (type == Boolean.class) {
+			return (T) Boolean.valueOf(value);
+		}
+		return type.cast(value);
+	}
+
+	@Override
+	public String name() {
+		return "benchmark";
+	}
+
+	@Override
+	public long getTotalDistanceUnits() {
+		return 0;
+	}
+
+	@Override
+	public double getTotalDistance() {
+		return 0;
+	}
+
+	@Override
+	public long getTotalCost() {
+		return 0;
+	}
+
+	@Override
+	public long getTotalReward() {
+		return 0;
+	}
+
+	@Override
+	public long getTotalProfit() {
+		return 0;
+	}
+
+	@Override
+	public int getTotalTasks() {
+		return 0;
+	}
+
+	@Override
+	public int compareTo(AgentStatistics o) {
+		return 0;
+	}
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.awt.Color;
+
+import logist.simulation.Vehicle;
+import logist.task.TaskSet;
+import logist.topology.Topology.City;
+
+/**
+ * A vehicle standing in its home city with no task, as at the start of a
+ * simulation.
+ */
+class BenchmarkVehicle implements Vehicle {
+
+	private final City home;
+	private final int capacity;
+	private final int costPerKm;
+	private final TaskSet currentTasks;
+
+	BenchmarkVehicle(City home, int capacity, int costPerKm,
+			TaskSet currentTasks) {
+		this.home = home;
+		this.capacity = capacity;
+		this.costPerKm = costPerKm;
+		this.currentTasks = currentTasks;
+	}
+
+	@Override
+	public int id() {
+		return 0;
+	}
+
+	@Override
+	public String name() {
+		return "Benchmark vehicle";
+	}
+
+	@Override
+	public int capacity() {
+		return capacity;
+	}
+
+	@Override
+	public City homeCity() {
+		return home;
+	}
+
+	@Override
+	public double speed() {
+		return 90;
+	}
+
+	@Override
+	public int costPerKm() {
+		return costPerKm;
+	}
+
+	@Override
+	public City getCurrentCity() {
+		return home;
+	}
+
+	@Override
+	public TaskSet getCurrentTasks() {
+		return currentTasks;
+	}
+
+	@Override
+	public long getReward() {
+		return 0;
+	}
+
+	@Override
+	public long getDistanceUnits() {
+		return 0;
+	}
+
+	@Override
+	public double getDistance() {
+		return 0;
+	}
+
+	@Override
+	public Color color() {
+		return Color.BLUE;
+	}
+}
@@ -0,0 +1,226 @@
+package benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import logist.behavior.DeliberativeBehavior;
+import logist.config.Parsers;
+import logist.plan.Plan;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/**
+ * Benchmark of the deliberative planners on the shipped topologies, with 4 to
+ * 12 tasks drawn with fixed seeds, so that the planners can be compared and a
+ * regression can be spotted from one version to the next.
+ * <p>
+ * For every topology, planner and number of tasks, the plan is computed a few
+ * times to warm up the JVM, then measured: the throughput (plans per second),
+ * the minimum, median and maximum latencies and the allocation rate of the
+ * planning thread are written as one CSV line. The allocation is reported as
+ * unmeasured when the JVM cannot count the bytes allocated by a thread. Once
+ * the median latency of a planner exceeds the time budget, the larger numbers
+ * of tasks are skipped for this planner and topology.
+ * <p>
+ * Usage (from the project directory, with logist on the class path):
+ *
+ * <pre>
+ * java benchmark.PlannerBenchmark [topology ...]
+ * </pre>
+ *
+ * The planners can be changed with -Dplanners=class:ALGORITHM,... and the time
+ * budget (ms) with -Dbudget=ms.
+ */
+public class PlannerBenchmark {
+
+	private static final String[] TOPOLOGIES = { "switzerland", "france",
+			"england", "the_netherlands" };
+	private static final String PLANNERS = "template.DeliberativeTemplate:BFS,"
+			+ "template.DeliberativeTemplate:ASTAR,"
+			+ "templateJT.DeliberativeTemplate2:ASTAR,"
+			+ "templateJT.DeliberativeTemplate3:ASTAR";
+
+	private static final int MIN_TASKS = 4;
+	private static final int MAX_TASKS = 12;
+	private static final long SEED = 23456;
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASURED_ITERATIONS = 10;
+	private static final long DEFAULT_BUDGET = 2000;
+
+	// the settings of config/deliberative.xml
+	private static final int CAPACITY = 30;
+	private static final int COST_PER_KM = 5;
+	private static final int WEIGHT = 3;
+	private static final long REWARD = 100;
+
+	private static final PrintStream out = System.out;
+	// the planners print their plans: their output is dropped
+	private static final PrintStream silent = new PrintStream(
+			new OutputStream() {
+
+				@Override
+				public void write(int b) {
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+				}
+			});
+
+	public static void main(String[] args) throws Exception {
+		String[] topologies = args.length > 0 ? args : TOPOLOGIES;
+		String[] planners = System.getProperty("planners", PLANNERS)
+				.split(",");
+		long budget = Long.getLong("budget", DEFAULT_BUDGET);
+
+		// with a few measured plans, the higher percentiles would only be the
+		// maximum again: the median and the extremes are reported
+		out.println("topology,planner,algorithm,tasks,plans_per_s,min_ms,"
+				+ "p50_ms,max_ms,alloc_mb_per_s,alloc_bytes_per_plan,cost");
+		for (String topologyName : topologies) {
+			System.setOut(silent);
+			Topology topology;
+			try {
+				topology = Parsers.parseTopology("config/topology/"
+						+ topologyName + ".xml");
+			} finally {
+				System.setOut(out);
+			}
+			for (String planner : planners) {
+				String[] parts = planner.split(":");
+				for (int n = MIN_TASKS; n <= MAX_TASKS; ++n) {
+					double median = run(topologyName, topology, parts[0],
+							parts[1], n);
+					if (median > budget && n < MAX_TASKS) {
+						out.println("# " + planner + " skipped above " + n
+								+ " tasks on " + topologyName);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Benchmarks one planner on n tasks.
+	 *
+	 * @return the median latency (ms), or infinity if the planner failed
+	 */
+	private static double run(String topologyName, Topology topology,
+			String className, String algorithm, int n) throws Exception {
+		// the same tasks and home city for every planner
+		Random random = new Random(SEED + n);
+		List<City> cities = topology.cities();
+		City home = cities.get(random.nextInt(cities.size()));
+		TaskSet tasks = createTasks(cities, n, random);
+
+		Map<String, String> properties = new HashMap<String, String>();
+		properties.put("algorithm", algorithm);
+		BenchmarkVehicle vehicle = new BenchmarkVehicle(home, CAPACITY,
+				COST_PER_KM, TaskSet.noneOf(tasks));
+		BenchmarkAgent agent = new BenchmarkAgent(vehicle, properties);
+
+		int iterations = WARMUP_ITERATIONS + MEASURED_ITERATIONS;
+		long[] latencies = new long[MEASURED_ITERATIONS];
+		long allocatedBytes = 0;
+		boolean allocationMeasured = true;
+		double cost = 0;
+		for (int k = 0; k < iterations; ++k) {
+			DeliberativeBehavior behavior = (DeliberativeBehavior) Class
+					.forName(className).getDeclaredConstructor().newInstance();
+			behavior.setup(topology, null, agent);
+			TaskSet planTasks = tasks.clone();
+
+			long startBytes = threadAllocatedBytes();
+			long start = System.nanoTime();
+			Plan plan;
+			System.setOut(silent);
+			try {
+				plan = behavior.plan(vehicle, planTasks);
+			} catch (Throwable e) {
+				System.setOut(out);
+				out.println("# " + className + ":" + algorithm + " failed on "
+						+ n + " tasks on " + topologyName + ": " + e);
+				return Double.POSITIVE_INFINITY;
+			} finally {
+				System.setOut(out);
+			}
+			long time = System.nanoTime() - start;
+			long bytes = threadAllocatedBytes() - startBytes;
+
+			if (k >= WARMUP_ITERATIONS) {
+				latencies[k - WARMUP_ITERATIONS] = time;
+				allocatedBytes += bytes;
+			}
+			allocationMeasured &= startBytes >= 0;
+			cost = plan.totalDistance() * COST_PER_KM;
+		}
+
+		Arrays.sort(latencies);
+		long totalTime = 0;
+		for (long latency : latencies) {
+			totalTime += latency;
+		}
+		double seconds = totalTime / 1e9;
+		String allocation = allocationMeasured ? String.format(Locale.ROOT,
+				"%.2f,%d", allocatedBytes / 1e6 / seconds, allocatedBytes
+						/ MEASURED_ITERATIONS) : "unmeasured,unmeasured";
+		out.println(String.format(Locale.ROOT,
+				"%s,%s,%s,%d,%.2f,%.3f,%.3f,%.3f,%s,%.1f", topologyName,
+				className, algorithm, n, MEASURED_ITERATIONS / seconds,
+				latencies[0] / 1e6, percentile(latencies, 50),
+				latencies[MEASURED_ITERATIONS - 1] / 1e6, allocation, cost));
+		return percentile(latencies, 50);
+	}
+
+	private static TaskSet createTasks(List<City> cities, int n,
+			Random random) {
+		Task[] tasks = new Task[n];
+		for (int i = 0; i < n; ++i) {
+			City pickup = cities.get(random.nextInt(cities.size()));
+			City delivery;
+			do {
+				delivery = cities.get(random.nextInt(cities.size()));
+			} while (delivery == pickup);
+			tasks[i] = new Task(i, pickup, delivery, REWARD, WEIGHT);
+		}
+		return TaskSet.create(tasks);
+	}
+
+	/**
+	 * The nearest-rank percentile (ms) of sorted latencies (ns).
+	 */
+	private static double percentile(long[] sortedLatencies, int percent) {
+		int rank = (int) Math.ceil(percent / 100.0 * sortedLatencies.length);
+		return sortedLatencies[Math.max(rank - 1, 0)] / 1e6;
+	}
+
+	/**
+	 * The bytes allocated so far by the current thread, or -1 if the JVM does
+	 * not count them.
+	 */
+	private static long threadAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		// the allocation counters are an extension of the HotSpot JVM, which
+		// can also be unsupported or disabled
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+			if (allocationBean.isThreadAllocatedMemorySupported()
+					&& allocationBean.isThreadAllocatedMemoryEnabled()) {
+				return allocationBean.getThreadAllocatedBytes(Thread
+						.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+}
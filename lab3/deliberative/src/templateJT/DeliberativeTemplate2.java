@@ -179,12 +179,7 @@ public class DeliberativeTemplate2 implements DeliberativeBehavior {
 					hasDeliver = true;
 
 					ActionEdge a = new ActionEdge(currentState, null, false, t);
-					TaskSet newTaskSet = TaskSet.copyOf(currentState
-							.getCarriedTasks());
-					newTaskSet.remove(t);
-					StateNode nextState = new StateNode(
-							currentState.getCurrentCity(), newTaskSet,
-							currentState.getRemainingTasks(), a);
+					StateNode nextState = currentState.deliver(t, a);
 					nextState.setG(currentState.getG());
 					nextState.setH(heuristic(nextState));
 
@@ -209,9 +204,7 @@ public class DeliberativeTemplate2 implements DeliberativeBehavior {
 			for (City n : currentState.getCurrentCity().neighbors()) {
 
 				ActionEdge a = new ActionEdge(currentState, n, false, null);
-				StateNode nextState = new StateNode(n,
-						currentState.getCarriedTasks(),
-						currentState.getRemainingTasks(), a);
+				StateNode nextState = currentState.moveTo(n, a);
 				nextState.setG(currentState.getG()
 						+ currentState.getCurrentCity().distanceTo(n));
 				nextState.setH(heuristic(nextState));
@@ -232,15 +225,7 @@ public class DeliberativeTemplate2 implements DeliberativeBehavior {
 					if (t.weight <= capacity - currentState.getWeight()) {
 						ActionEdge a = new ActionEdge(currentState, null, true,
 								t);
-						TaskSet newRemainingTaskSet = TaskSet
-								.copyOf(currentState.getRemainingTasks());
-						newRemainingTaskSet.remove(t);
-						TaskSet newCarriedTaskSet = TaskSet.copyOf(currentState
-								.getCarriedTasks());
-						newCarriedTaskSet.add(t);
-						StateNode nextState = new StateNode(
-								currentState.getCurrentCity(),
-								newCarriedTaskSet, newRemainingTaskSet, a);
+						StateNode nextState = currentState.pickup(t, a);
 
 						nextState.setG(currentState.getG());
 						nextState.setH(heuristic(nextState));
@@ -385,9 +370,7 @@ public class DeliberativeTemplate2 implements DeliberativeBehavior {
 			for (City n : currentState.getCurrentCity().neighbors()) {
 
 				ActionEdge a = new ActionEdge(currentState, n, false, null);
-				StateNode nextState = new StateNode(n,
-						currentState.getCarriedTasks(),
-						currentState.getRemainingTasks(), a);
+				StateNode nextState = currentState.moveTo(n, a);
 				nextState.setG(currentState.getG()
 						+ currentState.getCurrentCity().distanceTo(n));
 
@@ -402,12 +385,7 @@ public class DeliberativeTemplate2 implements DeliberativeBehavior {
 				if (t.deliveryCity.equals(currentState.getCurrentCity())) {
 
 					ActionEdge a = new ActionEdge(currentState, null, false, t);
-					TaskSet newTaskSet = TaskSet.copyOf(currentState
-							.getCarriedTasks());
-					newTaskSet.remove(t);
-					StateNode nextState = new StateNode(
-							currentState.getCurrentCity(), newTaskSet,
-							currentState.getRemainingTasks(), a);
+					StateNode nextState = currentState.deliver(t, a);
 					nextState.setG(currentState.getG());
 
 					if (!visited.contains(nextState)) {
@@ -423,15 +401,7 @@ public class DeliberativeTemplate2 implements DeliberativeBehavior {
 				if (t.pickupCity.equals(currentState.getCurrentCity())
 						&& capacity >= currentState.getWeight() + t.weight) {
 					ActionEdge a = new ActionEdge(currentState, null, true, t);
-					TaskSet newRemainingTaskSet = TaskSet.copyOf(currentState
-							.getRemainingTasks());
-					newRemainingTaskSet.remove(t);
-					TaskSet newCarriedTaskSet = TaskSet.copyOf(currentState
-							.getCarriedTasks());
-					newCarriedTaskSet.add(t);
-					StateNode nextState = new StateNode(
-							currentState.getCurrentCity(), newCarriedTaskSet,
-							newRemainingTaskSet, a);
+					StateNode nextState = currentState.pickup(t, a);
 					nextState.setG(currentState.getG());
 
 					if (!visited.contains(nextState)) {
@@ -6,11 +6,20 @@ import logist.topology.Topology.City;
 
 public class StateNode {
 
+	// the place of a task in the Zobrist hash (a delivered task has no key)
+	private static final int REMAINING = 0;
+	private static final int CARRIED = 1;
+
 	private City currentCity;
 	private TaskSet carriedTasks;
 	private TaskSet remainingTasks;
 	private int currentWeight = 0;
 
+	// maintained from the previous state by the successor methods, so that
+	// the goal test and the hash do not depend on the number of tasks
+	private int undeliveredTasks = 0;
+	private long zobristHash = 0;
+
 	private double h = 0.0;
 	private double g = 0.0;
 
@@ -27,6 +36,82 @@ public class StateNode {
 		remainingTasks = TaskSet.copyOf(remT);
 
 		action = a;
+
+		undeliveredTasks = carriedTasks.size() + remainingTasks.size();
+		zobristHash = cityKey(currentCity);
+		for (Task t : carriedTasks) {
+			zobristHash ^= taskKey(t, CARRIED);
+		}
+		for (Task t : remainingTasks) {
+			zobristHash ^= taskKey(t, REMAINING);
+		}
+	}
+
+	/**
+	 * A successor state: the task sets are shared with the previous state, and
+	 * must not be modified.
+	 */
+	private StateNode(City curC, TaskSet carT, TaskSet remT, ActionEdge a,
+			int weight, int undelivered, long hash) {
+		currentCity = curC;
+		carriedTasks = carT;
+		remainingTasks = remT;
+		action = a;
+		currentWeight = weight;
+		undeliveredTasks = undelivered;
+		zobristHash = hash;
+	}
+
+	/**
+	 * The state reached by moving to the neighbor city n.
+	 */
+	public StateNode moveTo(City n, ActionEdge a) {
+		return new StateNode(n, carriedTasks, remainingTasks, a,
+				currentWeight, undeliveredTasks, zobristHash
+						^ cityKey(currentCity) ^ cityKey(n));
+	}
+
+	/**
+	 * The state reached by delivering the carried task t.
+	 */
+	public StateNode deliver(Task t, ActionEdge a) {
+		TaskSet carried = TaskSet.copyOf(carriedTasks);
+		carried.remove(t);
+		return new StateNode(currentCity, carried, remainingTasks, a,
+				currentWeight - t.weight, undeliveredTasks - 1, zobristHash
+						^ taskKey(t, CARRIED));
+	}
+
+	/**
+	 * The state reached by picking up the remaining task t.
+	 */
+	public StateNode pickup(Task t, ActionEdge a) {
+		TaskSet carried = TaskSet.copyOf(carriedTasks);
+		carried.add(t);
+		TaskSet remaining = TaskSet.copyOf(remainingTasks);
+		remaining.remove(t);
+		return new StateNode(currentCity, carried, remaining, a,
+				currentWeight + t.weight, undeliveredTasks, zobristHash
+						^ taskKey(t, REMAINING) ^ taskKey(t, CARRIED));
+	}
+
+	private static long taskKey(Task t, int place) {
+		return zobristKey(2L * t.id + place);
+	}
+
+	private static long cityKey(City c) {
+		return zobristKey(-1L - c.id);
+	}
+
+	/**
+	 * A pseudo-random key (the mixing function of SplitMix64), so that the
+	 * Zobrist keys do not need to be stored in a table.
+	 */
+	private static long zobristKey(long index) {
+		long z = index * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
 	}
 
 
@@ -51,7 +136,7 @@ public class StateNode {
 	}
 
 	public boolean isFinalState() {
-		return carriedTasks.isEmpty() && remainingTasks.isEmpty();
+		return undeliveredTasks == 0;
 	}
 
 	public void setH(double h) {
@@ -76,8 +161,7 @@ public class StateNode {
 
 	@Override
 	public int hashCode() {
-		return currentCity.hashCode() + carriedTasks.hashCode() * 11
-				+ remainingTasks.hashCode() * 41 + currentWeight * 13;
+		return (int) (zobristHash ^ (zobristHash >>> 32));
 	}
 
 	@Override
@@ -86,7 +170,8 @@ public class StateNode {
 			return false;
 		}
 		StateNode s = (StateNode) o;
-		return s.currentCity == currentCity &&
+		return s.zobristHash == zobristHash &&
+				s.currentCity == currentCity &&
 				s.currentWeight == currentWeight &&
 				s.carriedTasks.equals(carriedTasks) &&
 				s.remainingTasks.equals(remainingTasks);
@@ -0,0 +1,244 @@
+package template;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * Anytime planner: runs weighted A* (f = g + w * h) with a decreasing weight
+ * w. A large weight finds a first plan quickly, every following run only
+ * looks for plans that are cheaper than the best one found so far, and the
+ * last run (w = 1) proves optimality. When the deadline is reached, the best
+ * plan found so far is returned.
+ *
+ */
+public class AnytimeSearch {
+
+    // used to compare costs computed by summing distances in different orders
+    private static final double EPSILON = 1e-6;
+    private static final double WEIGHT_DECREMENT = 0.5;
+    // the deadline is checked every 1024 expanded states
+    private static final int DEADLINE_CHECK_MASK = 0x3FF;
+
+    private final SearchProblem problem;
+    private final double initialWeight;
+    private final long deadline;
+
+    // the nodes of the current run, reused by the following runs
+    private final NodePool pool = new NodePool();
+    private final NodeQueue open = new NodeQueue();
+
+    private Plan bestPlan = null;
+    private double bestCost = Double.POSITIVE_INFINITY;
+    private double lastWeight;
+    private boolean optimal = false;
+    private boolean timedOut = false;
+    private int numberOfImprovements = 0;
+    private long numberOfExpandedStates = 0;
+    private long numberOfGeneratedStates = 0;
+    private long numberOfDuplicateStates = 0;
+    // the largest number of states reached and of open nodes of one run
+    private int numberOfKnownStates = 0;
+    private int largestOpenSize = 0;
+
+    /**
+     * @param deadline
+     *            the System.nanoTime() after which the search must return
+     */
+    public AnytimeSearch(SearchProblem problem, double initialWeight,
+	    long deadline) {
+	this.problem = problem;
+	this.initialWeight = Math.max(initialWeight, 1.0);
+	this.deadline = deadline;
+    }
+
+    public Plan createPlan() {
+	double weight = initialWeight;
+
+	while (!optimal && !timedOut) {
+	    lastWeight = weight;
+	    // when a run completes, no plan is cheaper than the incumbent, since
+	    // every state with g + h below its cost has been expanded
+	    optimal = weightedAstar(weight);
+	    weight = Math.max(1.0, weight - WEIGHT_DECREMENT);
+	}
+
+	if (bestPlan == null) {
+	    // not even a first plan could be found in time
+	    System.out.println("Anytime search: no plan found before the "
+		    + "deadline, falling back to the sequential plan");
+	    return problem.sequentialPlan();
+	}
+	return bestPlan;
+    }
+
+    /**
+     * One weighted A* run, pruning every state that cannot lead to a plan
+     * cheaper than the incumbent.
+     *
+     * @return true if the incumbent is known to be optimal
+     */
+    private boolean weightedAstar(double weight) {
+	largestOpenSize = Math.max(largestOpenSize, open.peakSize());
+	pool.clear();
+	open.clear();
+	// the smallest cost with which each state has been reached
+	Map<Long, Double> bestCosts = new HashMap<Long, Double>();
+
+	int[] tasksStatus = problem.initialStatus();
+	City initialCity = problem.initialCity();
+	long initialKey = problem.key(problem.packStatus(tasksStatus),
+		initialCity);
+	open.add(pool.add(initialKey, 0, NodePool.NO_PARENT, 0), weight
+		* problem.heuristic(tasksStatus, initialCity));
+	bestCosts.put(initialKey, 0.0);
+
+	int numberOfTasks = problem.numberOfTasks();
+
+	while (!open.isEmpty()) {
+	    if ((numberOfExpandedStates & DEADLINE_CHECK_MASK) == 0
+		    && System.nanoTime() >= deadline) {
+		timedOut = true;
+		return false;
+	    }
+
+	    int node = open.poll();
+	    long nodeKey = pool.key(node);
+	    double g = pool.cost(node);
+
+	    // the node has been reached again with a smaller cost, or cannot
+	    // improve on the incumbent anymore
+	    Double knownCost = bestCosts.get(nodeKey);
+	    if (knownCost != null && knownCost < g) {
+		++numberOfDuplicateStates;
+		continue;
+	    }
+	    long packedStatus = problem.packedStatus(nodeKey);
+	    City city = problem.city(nodeKey);
+	    problem.unpackStatus(packedStatus, tasksStatus);
+	    if (g + problem.heuristic(tasksStatus, city) >= bestCost
+		    - EPSILON) {
+		continue;
+	    }
+
+	    int charge = 0;
+	    int remainingTasks = 0;
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		if (tasksStatus[i] == DeliberativeState.PICKED_UP) {
+		    charge += problem.task(i).weight;
+		}
+		if (tasksStatus[i] != DeliberativeState.DELIVERED) {
+		    ++remainingTasks;
+		}
+	    }
+
+	    if (remainingTasks == 0) {
+		bestPlan = buildPlan(node);
+		bestCost = g;
+		++numberOfImprovements;
+		System.out.println("Anytime search: w = " + weight + ", cost = "
+			+ g);
+		// with w = 1, the first plan found is optimal, otherwise
+		// states with g + h below the new incumbent may remain: keep
+		// searching with the next weight
+		return weight == 1.0;
+	    }
+
+	    ++numberOfExpandedStates;
+
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		int status = tasksStatus[i];
+		if (status == DeliberativeState.DELIVERED) {
+		    continue;
+		}
+		if (status == DeliberativeState.NOT_PICKED_UP
+			&& charge + problem.task(i).weight > problem
+				.capacity()) {
+		    continue;
+		}
+
+		City destination = problem.destination(i, status);
+		double updatedCost = g + problem.cost(city, destination);
+		long key = problem.key(
+			packedStatus + problem.statusIncrement(i), destination);
+
+		Double previousCost = bestCosts.get(key);
+		if (previousCost != null && previousCost <= updatedCost) {
+		    ++numberOfDuplicateStates;
+		    continue;
+		}
+
+		tasksStatus[i] = status + 1;
+		double h = problem.heuristic(tasksStatus, destination);
+		tasksStatus[i] = status;
+
+		if (updatedCost + h >= bestCost - EPSILON) {
+		    continue;
+		}
+
+		bestCosts.put(key, updatedCost);
+		numberOfKnownStates = Math.max(numberOfKnownStates,
+			bestCosts.size());
+		++numberOfGeneratedStates;
+		open.add(pool.add(key, updatedCost, node,
+			NodePool.action(i, status + 1)), updatedCost + weight
+			* h);
+	    }
+	}
+	return true;
+    }
+
+    private Plan buildPlan(int goal) {
+	int length = problem.numberOfActions();
+	int[] taskIndices = new int[length];
+	int[] statuses = new int[length];
+	pool.path(goal, taskIndices, statuses);
+	return problem.buildPlan(taskIndices, statuses, length);
+    }
+
+    public double cost() {
+	return bestCost;
+    }
+
+    public boolean isOptimal() {
+	return optimal;
+    }
+
+    public boolean hasTimedOut() {
+	return timedOut;
+    }
+
+    public double lastWeight() {
+	return lastWeight;
+    }
+
+    public int numberOfImprovements() {
+	return numberOfImprovements;
+    }
+
+    public long numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public long numberOfGeneratedStates() {
+	return numberOfGeneratedStates;
+    }
+
+    /**
+     * The number of successors dropped and of nodes skipped because their
+     * state had already been reached with a smaller cost.
+     */
+    public long numberOfDuplicateStates() {
+	return numberOfDuplicateStates;
+    }
+
+    public int largestOpenSize() {
+	return Math.max(largestOpenSize, open.peakSize());
+    }
+
+    public int numberOfKnownStates() {
+	return numberOfKnownStates;
+    }
+}
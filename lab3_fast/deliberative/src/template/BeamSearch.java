@@ -0,0 +1,142 @@
+package template;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * Beam search: a BFS that only keeps, at each level, the width states with
+ * the smallest g + h. Every action brings one task to its next status, so all
+ * plans have the same number of levels and the search expands at most width
+ * states per level: the planning time is linear in the number of tasks, at
+ * the price of optimality.
+ *
+ */
+public class BeamSearch {
+
+    private final SearchProblem problem;
+    private final int width;
+
+    private final NodePool pool = new NodePool();
+
+    private double cost;
+    private long numberOfExpandedStates = 0;
+    private long numberOfGeneratedStates = 0;
+    private long numberOfDuplicateStates = 0;
+    // the largest number of distinct successors of one level
+    private int largestLevel = 0;
+
+    public BeamSearch(SearchProblem problem, int width) {
+	this.problem = problem;
+	this.width = width;
+    }
+
+    public Plan createPlan() {
+	int[] tasksStatus = problem.initialStatus();
+	int numberOfTasks = problem.numberOfTasks();
+	int numberOfLevels = problem.numberOfActions();
+
+	int[] beam = { pool.add(
+		problem.key(problem.packStatus(tasksStatus),
+			problem.initialCity()), 0, NodePool.NO_PARENT, 0) };
+	TopKSelector selector = new TopKSelector(width);
+
+	for (int level = 0; level < numberOfLevels; ++level) {
+	    // the cheapest node reaching each state of the next level
+	    Map<Long, Integer> successors = new HashMap<Long, Integer>();
+
+	    for (int node : beam) {
+		long key = pool.key(node);
+		double g = pool.cost(node);
+		long packedStatus = problem.packedStatus(key);
+		City city = problem.city(key);
+		problem.unpackStatus(packedStatus, tasksStatus);
+		int charge = problem.charge(packedStatus);
+		++numberOfExpandedStates;
+
+		for (int i = 0; i < numberOfTasks; ++i) {
+		    int status = tasksStatus[i];
+		    if (status == DeliberativeState.DELIVERED
+			    || (status == DeliberativeState.NOT_PICKED_UP && charge
+				    + problem.task(i).weight > problem
+					.capacity())) {
+			continue;
+		    }
+
+		    City destination = problem.destination(i, status);
+		    double updatedCost = g + problem.cost(city, destination);
+		    long updatedKey = problem.key(packedStatus
+			    + problem.statusIncrement(i), destination);
+
+		    Integer previous = successors.get(updatedKey);
+		    if (previous != null && pool.cost(previous) <= updatedCost) {
+			++numberOfDuplicateStates;
+			continue;
+		    }
+		    successors.put(updatedKey, pool.add(updatedKey,
+			    updatedCost, node, NodePool.action(i, status + 1)));
+		    ++numberOfGeneratedStates;
+		}
+	    }
+
+	    if (successors.isEmpty()) {
+		throw new IllegalArgumentException(
+			"No plan can deliver all tasks with capacity "
+				+ problem.capacity());
+	    }
+
+	    largestLevel = Math.max(largestLevel, successors.size());
+
+	    // keep the width best successors
+	    selector.clear();
+	    for (int node : successors.values()) {
+		long key = pool.key(node);
+		City city = problem.city(key);
+		problem.unpackStatus(problem.packedStatus(key), tasksStatus);
+		selector.offer(node,
+			pool.cost(node) + problem.heuristic(tasksStatus, city));
+	    }
+	    beam = selector.nodes();
+	}
+
+	// all the states of the last level are final states
+	int best = beam[0];
+	for (int node : beam) {
+	    if (pool.cost(node) < pool.cost(best)) {
+		best = node;
+	    }
+	}
+	cost = pool.cost(best);
+
+	int[] taskIndices = new int[numberOfLevels];
+	int[] statuses = new int[numberOfLevels];
+	pool.path(best, taskIndices, statuses);
+	return problem.buildPlan(taskIndices, statuses, numberOfLevels);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public long numberOfGeneratedStates() {
+	return numberOfGeneratedStates;
+    }
+
+    /**
+     * The number of successors dropped because their state had already been
+     * reached with a smaller cost in the same level.
+     */
+    public long numberOfDuplicateStates() {
+	return numberOfDuplicateStates;
+    }
+
+    public int largestLevel() {
+	return largestLevel;
+    }
+}
@@ -0,0 +1,294 @@
+package template;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * BFS with branch-and-bound pruning. A first plan is built greedily by
+ * cheapest insertion, and its cost is an upper bound on the optimal cost: the
+ * BFS then drops every state whose cost plus the admissible heuristic is not
+ * below the best plan found so far, and the bound tightens whenever a cheaper
+ * plan is found.
+ *
+ */
+public class BranchAndBoundSearch {
+
+    // used to compare costs computed by summing distances in different orders
+    private static final double EPSILON = 1e-6;
+
+    private final SearchProblem problem;
+    private final int numberOfTasks;
+
+    private final NodePool pool = new NodePool();
+
+    private double upperBound;
+    private double cost;
+    private long numberOfExpandedStates = 0;
+    private long numberOfPrunedStates = 0;
+    private long numberOfDuplicateStates = 0;
+    // the largest number of nodes generated but not expanded yet
+    private int largestOpenSize = 0;
+    private int numberOfKnownStates = 0;
+
+    public BranchAndBoundSearch(SearchProblem problem) {
+	this.problem = problem;
+	this.numberOfTasks = problem.numberOfTasks();
+    }
+
+    public Plan createPlan() {
+	int length = problem.numberOfActions();
+	int[] taskIndices = new int[length];
+	int[] statuses = new int[length];
+
+	upperBound = cheapestInsertion(taskIndices, statuses);
+	cost = upperBound;
+	int bestGoal = NodePool.NO_PARENT;
+
+	// the smallest cost with which each state has been reached
+	Map<Long, Double> bestCosts = new HashMap<Long, Double>();
+	int[] tasksStatus = problem.initialStatus();
+	long initialKey = problem.key(problem.packStatus(tasksStatus),
+		problem.initialCity());
+	pool.add(initialKey, 0, NodePool.NO_PARENT, 0);
+	bestCosts.put(initialKey, 0.0);
+
+	// the nodes are added to the pool level by level: the pool is the
+	// queue of the BFS
+	for (int node = 0; node < pool.size(); ++node) {
+	    long key = pool.key(node);
+	    double g = pool.cost(node);
+	    largestOpenSize = Math.max(largestOpenSize, pool.size() - node);
+	    if (bestCosts.get(key) < g) {
+		++numberOfDuplicateStates;
+		continue;
+	    }
+
+	    long packedStatus = problem.packedStatus(key);
+	    City city = problem.city(key);
+	    problem.unpackStatus(packedStatus, tasksStatus);
+	    // the bound may have improved since the node was generated
+	    if (g + problem.heuristic(tasksStatus, city) >= cost - EPSILON) {
+		++numberOfPrunedStates;
+		continue;
+	    }
+
+	    int charge = problem.charge(packedStatus);
+	    boolean isFinal = true;
+	    ++numberOfExpandedStates;
+
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		int status = tasksStatus[i];
+		if (status == DeliberativeState.DELIVERED) {
+		    continue;
+		}
+		isFinal = false;
+		if (status == DeliberativeState.NOT_PICKED_UP
+			&& charge + problem.task(i).weight > problem.capacity()) {
+		    continue;
+		}
+
+		City destination = problem.destination(i, status);
+		double updatedCost = g + problem.cost(city, destination);
+		long updatedKey = problem.key(
+			packedStatus + problem.statusIncrement(i), destination);
+
+		Double previousCost = bestCosts.get(updatedKey);
+		if (previousCost != null && previousCost <= updatedCost) {
+		    ++numberOfDuplicateStates;
+		    continue;
+		}
+
+		tasksStatus[i] = status + 1;
+		double h = problem.heuristic(tasksStatus, destination);
+		tasksStatus[i] = status;
+		if (updatedCost + h >= cost - EPSILON) {
+		    ++numberOfPrunedStates;
+		    continue;
+		}
+
+		bestCosts.put(updatedKey, updatedCost);
+		pool.add(updatedKey, updatedCost, node,
+			NodePool.action(i, status + 1));
+	    }
+
+	    if (isFinal) {
+		// a cheaper plan: tighten the bound
+		cost = g;
+		bestGoal = node;
+	    }
+	}
+
+	numberOfKnownStates = bestCosts.size();
+
+	if (bestGoal == NodePool.NO_PARENT) {
+	    // no plan is cheaper than the greedy one
+	    return problem.buildPlan(taskIndices, statuses, length);
+	}
+	pool.path(bestGoal, taskIndices, statuses);
+	return problem.buildPlan(taskIndices, statuses, length);
+    }
+
+    /**
+     * Builds a plan by inserting the tasks one after the other, each at the
+     * positions of its pickup and delivery that increase the cost the least
+     * while respecting the capacity of the vehicle.
+     *
+     * @return the cost of the plan
+     */
+    private double cheapestInsertion(int[] taskIndices, int[] statuses) {
+	int[] initialStatus = problem.initialStatus();
+	int length = 0;
+
+	// the deliveries of the carried tasks first: the load of the
+	// sequence starts with all of them
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    if (initialStatus[i] == DeliberativeState.PICKED_UP) {
+		length = insertCheapest(taskIndices, statuses, length, i, true);
+	    }
+	}
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    if (initialStatus[i] == DeliberativeState.NOT_PICKED_UP) {
+		length = insertCheapest(taskIndices, statuses, length, i,
+			false);
+	    }
+	}
+	return sequenceCost(taskIndices, statuses, length);
+    }
+
+    /**
+     * Inserts task i where it increases the cost of the sequence the least.
+     *
+     * @return the new length
+     */
+    private int insertCheapest(int[] taskIndices, int[] statuses, int length,
+	    int i, boolean carried) {
+	double bestIncrease = Double.POSITIVE_INFINITY;
+	int bestPickup = -1;
+	int bestDelivery = -1;
+	// a carried task is only delivered (its pickup is at -1)
+	for (int p = carried ? -1 : 0; p <= (carried ? -1 : length); ++p) {
+	    for (int d = Math.max(p, 0); d <= length; ++d) {
+		double increase = insertionCost(taskIndices, statuses,
+			length, i, p, d);
+		if (increase < bestIncrease) {
+		    bestIncrease = increase;
+		    bestPickup = p;
+		    bestDelivery = d;
+		}
+	    }
+	}
+	// only a task heavier than the capacity fits nowhere, since picking
+	// it up after all the other deliveries starts from an empty vehicle
+	if (bestDelivery < 0) {
+	    throw new IllegalArgumentException(
+		    "No plan can deliver all tasks with capacity "
+			    + problem.capacity());
+	}
+	return insert(taskIndices, statuses, length, i, bestPickup,
+		bestDelivery);
+    }
+
+    /**
+     * The cost increase of inserting the pickup of task i before the action
+     * at position p (none if p is -1) and its delivery before the action at
+     * position d, or infinity if the capacity is exceeded.
+     */
+    private double insertionCost(int[] taskIndices, int[] statuses,
+	    int length, int i, int p, int d) {
+	int[] candidateTasks = new int[length + 2];
+	int[] candidateStatuses = new int[length + 2];
+	System.arraycopy(taskIndices, 0, candidateTasks, 0, length);
+	System.arraycopy(statuses, 0, candidateStatuses, 0, length);
+	int candidateLength = insert(candidateTasks, candidateStatuses, length,
+		i, p, d);
+
+	int charge = problem.initialCharge();
+	for (int k = 0; k < candidateLength; ++k) {
+	    int weight = problem.task(candidateTasks[k]).weight;
+	    charge += candidateStatuses[k] == DeliberativeState.PICKED_UP ? weight
+		    : -weight;
+	    if (charge > problem.capacity()) {
+		return Double.POSITIVE_INFINITY;
+	    }
+	}
+	return sequenceCost(candidateTasks, candidateStatuses, candidateLength)
+		- sequenceCost(taskIndices, statuses, length);
+    }
+
+    /**
+     * Inserts the pickup of task i at position p (if p is not -1) and its
+     * delivery at position d of the original sequence.
+     *
+     * @return the new length
+     */
+    private static int insert(int[] taskIndices, int[] statuses, int length,
+	    int i, int p, int d) {
+	int inserted = p < 0 ? 1 : 2;
+	// shift the actions after d by inserted, those between p and d by 1
+	for (int k = length - 1; k >= 0 && k >= d; --k) {
+	    taskIndices[k + inserted] = taskIndices[k];
+	    statuses[k + inserted] = statuses[k];
+	}
+	if (p >= 0) {
+	    for (int k = d - 1; k >= p; --k) {
+		taskIndices[k + 1] = taskIndices[k];
+		statuses[k + 1] = statuses[k];
+	    }
+	    taskIndices[p] = i;
+	    statuses[p] = DeliberativeState.PICKED_UP;
+	}
+	taskIndices[d + inserted - 1] = i;
+	statuses[d + inserted - 1] = DeliberativeState.DELIVERED;
+	return length + inserted;
+    }
+
+    private double sequenceCost(int[] taskIndices, int[] statuses, int length) {
+	double sequenceCost = 0;
+	City city = problem.initialCity();
+	for (int k = 0; k < length; ++k) {
+	    City next = problem.destination(taskIndices[k], statuses[k] - 1);
+	    sequenceCost += problem.cost(city, next);
+	    city = next;
+	}
+	return sequenceCost;
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public double upperBound() {
+	return upperBound;
+    }
+
+    public long numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public long numberOfPrunedStates() {
+	return numberOfPrunedStates;
+    }
+
+    public long numberOfGeneratedStates() {
+	return pool.size() - 1;
+    }
+
+    /**
+     * The number of successors dropped and of nodes skipped because their
+     * state had already been reached with a smaller cost.
+     */
+    public long numberOfDuplicateStates() {
+	return numberOfDuplicateStates;
+    }
+
+    public int largestOpenSize() {
+	return largestOpenSize;
+    }
+
+    public int numberOfKnownStates() {
+	return numberOfKnownStates;
+    }
+}
@@ -0,0 +1,377 @@
+package template;
+
+import java.util.Arrays;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * Exact dynamic programming solver (in the style of Held-Karp). A state is
+ * the progress of every task (which gives the set of delivered tasks and the
+ * set of carried tasks) together with the current city. The vehicle is always
+ * at the pickup or delivery city of the task of its last action, so the
+ * current city is stored as one of these points.
+ * <p>
+ * Identical tasks (see TaskClasses) are interchangeable: the state only counts
+ * how many tasks of each class are carried and delivered, which divides the
+ * number of states by the number of ways to order the tasks of each class.
+ * <p>
+ * The progress of the classes is numbered in a mixed radix (one digit per
+ * class), so that every action leads to a larger number: the table of the
+ * smallest cost of each state is filled bottom-up in a single pass, without
+ * any queue or hash table.
+ *
+ */
+public class DPSearch {
+
+    // the previous point of a state reached directly from the initial city
+    private static final byte INITIAL_POINT = -1;
+
+    // bytes of an entry of the tables: its cost and its previous point
+    private static final int ENTRY_SIZE = 8 + 1;
+    // largest number of entries of an array
+    private static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;
+    // share of the heap still available that the tables may take
+    private static final double MEMORY_SHARE = 0.5;
+
+    private final SearchProblem problem;
+    private final TaskClasses classes;
+    private final int numberOfClasses;
+    // the pickup city (2 * c) and the delivery city (2 * c + 1) of each class
+    private final int numberOfPoints;
+
+    // the progress of a class c is a pair (picked up, delivered), numbered by
+    // digit; for each digit, the number of carried tasks, and the digit
+    // reached or left by a pickup and a delivery (-1 if not possible)
+    private final int[][] pickedUp;
+    private final int[][] nextPickup;
+    private final int[][] nextDelivery;
+    private final int[][] previousPickup;
+    private final int[][] previousDelivery;
+
+    // value of one unit of the digit of each class in the status number
+    private final int[] strides;
+    private final int numberOfStatuses;
+
+    // cost[status * numberOfPoints + point], and the point the vehicle came
+    // from (INITIAL_POINT if it came from the initial city)
+    private double[] costs;
+    private byte[] previousPoints;
+
+    private double cost;
+    private long numberOfStates = 0;
+
+    public DPSearch(SearchProblem problem) {
+	this.problem = problem;
+	this.classes = new TaskClasses(problem);
+	this.numberOfClasses = classes.numberOfClasses();
+	this.numberOfPoints = 2 * numberOfClasses;
+	if (numberOfPoints > Byte.MAX_VALUE) {
+	    throw new IllegalArgumentException("Too many tasks for the DP");
+	}
+	long entries = tableEntries(classes);
+	long maxEntries = availableEntries();
+	if (entries > maxEntries) {
+	    throw new IllegalArgumentException("The tables of the DP for "
+		    + problem.numberOfTasks() + " tasks need "
+		    + (entries == Long.MAX_VALUE ? "more entries than an array"
+			    : entries * ENTRY_SIZE / (1024 * 1024) + " MB")
+		    + ", only " + maxEntries * ENTRY_SIZE / (1024 * 1024)
+		    + " MB of the heap are available");
+	}
+
+	this.pickedUp = new int[numberOfClasses][];
+	this.nextPickup = new int[numberOfClasses][];
+	this.nextDelivery = new int[numberOfClasses][];
+	this.previousPickup = new int[numberOfClasses][];
+	this.previousDelivery = new int[numberOfClasses][];
+	this.strides = new int[numberOfClasses];
+
+	long statuses = 1;
+	for (int c = 0; c < numberOfClasses; ++c) {
+	    int radix = numberDigits(c);
+	    strides[c] = (int) statuses;
+	    statuses *= radix;
+	}
+	this.numberOfStatuses = (int) statuses;
+    }
+
+    /**
+     * @return the number of entries of the tables of the DP for the problem,
+     *         or Long.MAX_VALUE if they cannot be held in arrays
+     */
+    public static long tableEntries(SearchProblem problem) {
+	return tableEntries(new TaskClasses(problem));
+    }
+
+    private static long tableEntries(TaskClasses classes) {
+	long entries = 2 * classes.numberOfClasses();
+	if (entries > Byte.MAX_VALUE) {
+	    return Long.MAX_VALUE;
+	}
+	for (int c = 0; c < classes.numberOfClasses(); ++c) {
+	    entries *= numberOfProgresses(classes.size(c),
+		    classes.initialPickedUp(c));
+	    if (entries > MAX_ENTRIES) {
+		return Long.MAX_VALUE;
+	    }
+	}
+	return entries;
+    }
+
+    /**
+     * @return the number of progresses (p picked up, d delivered) of a class
+     *         of size tasks, initial of them picked up: initial <= p + d <=
+     *         size, which is the number of digits given by numberDigits()
+     */
+    private static long numberOfProgresses(int size, int initial) {
+	long count = 0;
+	for (int t = initial; t <= size; ++t) {
+	    count += t + 1;
+	}
+	return count;
+    }
+
+    /**
+     * @return the number of entries that the tables may take: a share of the
+     *         heap which is free or may still be allocated
+     */
+    public static long availableEntries() {
+	Runtime runtime = Runtime.getRuntime();
+	long available = runtime.maxMemory()
+		- (runtime.totalMemory() - runtime.freeMemory());
+	return Math.min(MAX_ENTRIES, (long) (MEMORY_SHARE * available)
+		/ ENTRY_SIZE);
+    }
+
+    /**
+     * @return whether the tables of the DP for the problem take at most
+     *         maxEntries entries
+     */
+    public static boolean fits(SearchProblem problem, long maxEntries) {
+	return tableEntries(problem) <= maxEntries;
+    }
+
+    /**
+     * Numbers the progress (p picked up, d delivered) of class c that can be
+     * reached from its initial progress, by number of actions 2 * d + p and
+     * then by d: both a pickup and a delivery lead to a larger digit, and the
+     * initial progress is the digit 0.
+     *
+     * @return the number of digits
+     */
+    private int numberDigits(int c) {
+	int size = classes.size(c);
+	int initial = classes.initialPickedUp(c);
+
+	int[][] digits = new int[size + 1][size + 1];
+	int numberOfDigits = 0;
+	for (int actions = initial; actions <= 2 * size; ++actions) {
+	    for (int d = 0; 2 * d <= actions; ++d) {
+		int p = actions - 2 * d;
+		if (p + d <= size && p + d >= initial) {
+		    digits[p][d] = numberOfDigits++;
+		}
+	    }
+	}
+
+	pickedUp[c] = new int[numberOfDigits];
+	nextPickup[c] = new int[numberOfDigits];
+	nextDelivery[c] = new int[numberOfDigits];
+	previousPickup[c] = new int[numberOfDigits];
+	previousDelivery[c] = new int[numberOfDigits];
+	Arrays.fill(previousPickup[c], -1);
+	Arrays.fill(previousDelivery[c], -1);
+	for (int p = 0; p <= size; ++p) {
+	    for (int d = 0; p + d <= size; ++d) {
+		int digit = digits[p][d];
+		if (p + d < initial) {
+		    continue;
+		}
+		pickedUp[c][digit] = p;
+		nextPickup[c][digit] = p + d < size ? digits[p + 1][d] : -1;
+		nextDelivery[c][digit] = p > 0 ? digits[p - 1][d + 1] : -1;
+		if (nextPickup[c][digit] >= 0) {
+		    previousPickup[c][nextPickup[c][digit]] = digit;
+		}
+		if (nextDelivery[c][digit] >= 0) {
+		    previousDelivery[c][nextDelivery[c][digit]] = digit;
+		}
+	    }
+	}
+	return numberOfDigits;
+    }
+
+    public Plan createPlan() {
+	if (problem.numberOfActions() == 0) {
+	    cost = 0;
+	    return problem.buildPlan(new int[0], new int[0], 0);
+	}
+
+	City[] pointCities = new City[numberOfPoints];
+	for (int c = 0; c < numberOfClasses; ++c) {
+	    pointCities[2 * c] = classes.pickupCity(c);
+	    pointCities[2 * c + 1] = classes.deliveryCity(c);
+	}
+	// the cost of moving between every two points, and from the initial
+	// city to every point
+	double[][] moves = new double[numberOfPoints][numberOfPoints];
+	double[] initialMoves = new double[numberOfPoints];
+	for (int p = 0; p < numberOfPoints; ++p) {
+	    for (int q = 0; q < numberOfPoints; ++q) {
+		moves[p][q] = problem.cost(pointCities[p], pointCities[q]);
+	    }
+	    initialMoves[p] = problem.cost(problem.initialCity(),
+		    pointCities[p]);
+	}
+
+	int size = numberOfStatuses * numberOfPoints;
+	costs = new double[size];
+	previousPoints = new byte[size];
+	Arrays.fill(costs, Double.POSITIVE_INFINITY);
+
+	// the digit of every class in the current status number
+	int[] digits = new int[numberOfClasses];
+
+	// the status number 0 is the initial status: the vehicle is still in
+	// its initial city
+	int charge = charge(digits);
+	for (int c = 0; c < numberOfClasses; ++c) {
+	    relaxActions(0, c, digits[c], charge, 0, initialMoves,
+		    INITIAL_POINT);
+	}
+
+	// every action increases the status number: when a status is reached
+	// by the loop, all the ways to reach it have been considered
+	for (int status = 1; status < numberOfStatuses; ++status) {
+	    increment(digits);
+	    charge = charge(digits);
+
+	    int base = status * numberOfPoints;
+	    for (int p = 0; p < numberOfPoints; ++p) {
+		double stateCost = costs[base + p];
+		if (stateCost == Double.POSITIVE_INFINITY) {
+		    continue;
+		}
+		++numberOfStates;
+
+		for (int c = 0; c < numberOfClasses; ++c) {
+		    relaxActions(status, c, digits[c], charge, stateCost,
+			    moves[p], (byte) p);
+		}
+	    }
+	}
+
+	// the last status number is the one where all tasks are delivered
+	int base = (numberOfStatuses - 1) * numberOfPoints;
+	int best = -1;
+	for (int p = 0; p < numberOfPoints; ++p) {
+	    if (costs[base + p] != Double.POSITIVE_INFINITY
+		    && (best < 0 || costs[base + p] < costs[base + best])) {
+		best = p;
+	    }
+	}
+	if (best < 0) {
+	    throw new IllegalArgumentException(
+		    "No plan can deliver all tasks with capacity "
+			    + problem.capacity());
+	}
+	cost = costs[base + best];
+
+	return buildPlan(numberOfStatuses - 1, best);
+    }
+
+    /**
+     * Relaxes the pickup and the delivery of a task of class c from the given
+     * state.
+     *
+     * @param moves
+     *            the cost of moving from the current point to every point
+     */
+    private void relaxActions(int status, int c, int digit, int charge,
+	    double stateCost, double[] moves, byte point) {
+	int next = nextPickup[c][digit];
+	if (next >= 0 && charge + classes.weight(c) <= problem.capacity()) {
+	    relax(status + (next - digit) * strides[c], 2 * c, stateCost
+		    + moves[2 * c], point);
+	}
+	next = nextDelivery[c][digit];
+	if (next >= 0) {
+	    relax(status + (next - digit) * strides[c], 2 * c + 1, stateCost
+		    + moves[2 * c + 1], point);
+	}
+    }
+
+    private void relax(int status, int point, double cost, byte previousPoint) {
+	int j = status * numberOfPoints + point;
+	if (cost < costs[j]) {
+	    costs[j] = cost;
+	    previousPoints[j] = previousPoint;
+	}
+    }
+
+    /**
+     * Moves the digits to the next status number.
+     */
+    private void increment(int[] digits) {
+	for (int c = 0; c < numberOfClasses; ++c) {
+	    if (++digits[c] < pickedUp[c].length) {
+		return;
+	    }
+	    digits[c] = 0;
+	}
+    }
+
+    private int charge(int[] digits) {
+	int charge = 0;
+	for (int c = 0; c < numberOfClasses; ++c) {
+	    charge += pickedUp[c][digits[c]] * classes.weight(c);
+	}
+	return charge;
+    }
+
+    private Plan buildPlan(int status, int point) {
+	int length = problem.numberOfActions();
+	int[] classIndices = new int[length];
+	int[] statuses = new int[length];
+
+	// walk back through the previous points: the point of each action
+	// gives its class and the status it leads to
+	for (int k = length - 1; k >= 0; --k) {
+	    int c = point / 2;
+	    int digit = (status / strides[c]) % pickedUp[c].length;
+	    int previousDigit;
+	    classIndices[k] = c;
+	    if (point % 2 == 0) {
+		statuses[k] = DeliberativeState.PICKED_UP;
+		previousDigit = previousPickup[c][digit];
+	    } else {
+		statuses[k] = DeliberativeState.DELIVERED;
+		previousDigit = previousDelivery[c][digit];
+	    }
+	    int previousPoint = previousPoints[status * numberOfPoints + point];
+	    status -= (digit - previousDigit) * strides[c];
+	    point = previousPoint;
+	}
+
+	int[] taskIndices = new int[length];
+	classes.assignTasks(classIndices, statuses, length, taskIndices);
+	return problem.buildPlan(taskIndices, statuses, length);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfStates() {
+	return numberOfStates;
+    }
+
+    public int numberOfClasses() {
+	return numberOfClasses;
+    }
+
+    public int tableSize() {
+	return numberOfStatuses * numberOfPoints;
+    }
+}
@@ -33,9 +33,24 @@ public class DeliberativeState {
 
     private DeliberativeState previous;
 
+    // the number of tasks not delivered yet and the Zobrist hash of the task
+    // statuses and of the departure city, updated from the previous state
+    // so that the goal test and the hash take constant time
+    private final int undeliveredTasks;
+    private final long zobristHash;
+
     public DeliberativeState(int[] tasksStatus, List<Task> tasks,
 	    int taskIndex, City departure, double charge, double cost,
 	    DeliberativeState previous) {
+	this(tasksStatus, tasks, taskIndex, departure, charge, cost,
+		previous, undeliveredTasks(tasksStatus), zobristHash(
+			tasksStatus, departure));
+    }
+
+    private DeliberativeState(int[] tasksStatus, List<Task> tasks,
+	    int taskIndex, City departure, double charge, double cost,
+	    DeliberativeState previous, int undeliveredTasks,
+	    long zobristHash) {
 
 	this.tasksStatus = tasksStatus;
 	this.tasks = tasks;
@@ -46,6 +61,46 @@ public class DeliberativeState {
 	this.charge = charge;
 
 	this.previous = previous;
+
+	this.undeliveredTasks = undeliveredTasks;
+	this.zobristHash = zobristHash;
+    }
+
+    private static int undeliveredTasks(int[] tasksStatus) {
+	int undelivered = 0;
+	for (int status : tasksStatus) {
+	    if (status != DELIVERED) {
+		++undelivered;
+	    }
+	}
+	return undelivered;
+    }
+
+    private static long zobristHash(int[] tasksStatus, City departure) {
+	long hash = cityKey(departure);
+	for (int i = 0; i < tasksStatus.length; ++i) {
+	    hash ^= statusKey(i, tasksStatus[i]);
+	}
+	return hash;
+    }
+
+    private static long statusKey(int i, int status) {
+	return zobristKey(3L * i + status);
+    }
+
+    private static long cityKey(City city) {
+	return city == null ? 0 : zobristKey(-1L - city.id);
+    }
+
+    /**
+     * A pseudo-random key (the mixing function of SplitMix64), so that the
+     * Zobrist keys do not need to be stored in a table.
+     */
+    private static long zobristKey(long index) {
+	long z = index * 0x9E3779B97F4A7C15L;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
     }
 
     public Set<DeliberativeState> getSuccessors(Agent agent) {
@@ -63,7 +118,7 @@ public class DeliberativeState {
 		double updatedCharge = charge + task.weight;
 
 		// in the next state, try picking up task, if possible
-		if (updatedCharge < agent.vehicles().get(0).capacity()) {
+		if (updatedCharge <= agent.vehicles().get(0).capacity()) {
 		    // indicate the task will be picked up
 		    int[] newTasksStatus = Arrays.copyOf(tasksStatus,
 			    tasksStatus.length);
@@ -76,7 +131,11 @@ public class DeliberativeState {
 
 		    DeliberativeState s = new DeliberativeState(newTasksStatus,
 			    tasks, i, destination, updatedCharge, updatedCost,
-			    this);
+			    this, undeliveredTasks, zobristHash
+				    ^ statusKey(i, NOT_PICKED_UP)
+				    ^ statusKey(i, PICKED_UP)
+				    ^ cityKey(departure)
+				    ^ cityKey(destination));
 		    nextPossibleStates.add(s);
 		}
 	    } else if (tasksStatus[i] == PICKED_UP) {
@@ -92,7 +151,12 @@ public class DeliberativeState {
 		City destination = task.deliveryCity;
 
 		DeliberativeState s = new DeliberativeState(newTasksStatus,
-			tasks, i, destination, updatedCharge, updatedCost, this);
+			tasks, i, destination, updatedCharge, updatedCost,
+			this, undeliveredTasks - 1, zobristHash
+				^ statusKey(i, PICKED_UP)
+				^ statusKey(i, DELIVERED)
+				^ cityKey(departure)
+				^ cityKey(destination));
 		nextPossibleStates.add(s);
 	    }
 
@@ -125,28 +189,15 @@ public class DeliberativeState {
     }
 
     public boolean isFinalState() {
-	int numberOfTasks = tasksStatus.length;
-	for (int i = 0; i < numberOfTasks; ++i) {
-	    if (tasksStatus[i] != 2) {
-		return false;
-	    }
-	}
-	return true;
+	return undeliveredTasks == 0;
     }
 
     @Override
     public int hashCode() {
-	final int prime = 31;
-	int result = 1;
-	long temp;
-	temp = Double.doubleToLongBits(charge);
-	result = prime * result + (int) (temp ^ (temp >>> 32));
-	temp = Double.doubleToLongBits(cost);
-	result = prime * result + (int) (temp ^ (temp >>> 32));
-	result = prime * result
-		+ ((departure == null) ? 0 : departure.hashCode());
-	result = prime * result + Arrays.hashCode(tasksStatus);
-	return result;
+	// the charge follows from the task statuses
+	long hash = zobristHash
+		^ (Double.doubleToLongBits(cost) * 0x9E3779B97F4A7C15L);
+	return (int) (hash ^ (hash >>> 32));
     }
 
     @Override
@@ -158,6 +209,8 @@ public class DeliberativeState {
 	if (getClass() != obj.getClass())
 	    return false;
 	DeliberativeState other = (DeliberativeState) obj;
+	if (zobristHash != other.zobristHash)
+	    return false;
 	if (Double.doubleToLongBits(charge) != Double
 		.doubleToLongBits(other.charge))
 	    return false;
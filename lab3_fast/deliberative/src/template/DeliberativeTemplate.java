@@ -1,17 +1,24 @@
 package template;
 
 /* import table */
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import logist.LogistSettings;
 import logist.agent.Agent;
 import logist.behavior.DeliberativeBehavior;
+import logist.config.Parsers;
 import logist.plan.Plan;
 import logist.simulation.Vehicle;
 import logist.task.Task;
@@ -31,9 +38,23 @@ import logist.topology.Topology.City;
 public class DeliberativeTemplate implements DeliberativeBehavior {
 
     enum Algorithm {
-	BFS, ASTAR, NAIVE
+	BFS, PARALLEL_BFS, EXTERNAL_BFS, ASTAR, IDASTAR, ANYTIME, DP, INCREMENTAL,
+	MACRO, BRANCH_AND_BOUND, BEAM, JOINT, NAIVE
     }
 
+    // default maximum number of states remembered by the memory-bounded search
+    private static final int DEFAULT_NODE_BUDGET = 1000000;
+    // default weight of the first weighted A* run of the anytime search
+    private static final double DEFAULT_INITIAL_WEIGHT = 3.0;
+    // default time (ms) kept between the end of the anytime search and the
+    // plan timeout
+    private static final long DEFAULT_PLAN_MARGIN = 1000;
+    // default size (MB) of the buffer of states kept on the heap by the
+    // external BFS
+    private static final long DEFAULT_MEMORY_BUDGET = 64;
+    // default number of states kept per level by the beam search
+    private static final int DEFAULT_BEAM_WIDTH = 1000;
+
     /* Environment */
     Topology topology;
     TaskDistribution td;
@@ -45,6 +66,28 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
     /* the planning class */
     Algorithm algorithm;
+    boolean nodePool;
+    int nodeBudget;
+    double initialWeight;
+    long planMargin;
+    int parallelism;
+    File scratchDirectory;
+    long memoryBudget;
+    int beamWidth;
+    // kept from one plan to the next by the INCREMENTAL search
+    IncrementalSearch incrementalSearch;
+    // plans all the vehicles of the agent together for the JOINT search, and
+    // the plans computed for the vehicles that have not asked for them yet
+    JointPlanner jointPlanner;
+    Map<Integer, Plan> jointPlans;
+
+    // the file where the metrics of every plan are appended (none if null),
+    // and the metrics of the last plan
+    String metricsLog;
+    SearchMetrics metrics;
+
+    /* the plan method cannot execute more than timeout_plan milliseconds */
+    long timeout_plan;
 
     @Override
     public void setup(Topology topology, TaskDistribution td, Agent agent) {
@@ -60,32 +103,112 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	// Throws IllegalArgumentException if algorithm is unknown
 	algorithm = Algorithm.valueOf(algorithmName.toUpperCase());
 
-	// ...
+	// whether BFS and ASTAR keep their nodes in a NodePool, or use one
+	// DeliberativeState per node
+	nodePool = agent.readProperty("node-pool", Boolean.class, true);
+	// maximum number of states kept in memory by IDASTAR
+	nodeBudget = agent.readProperty("node-budget", Integer.class,
+		DEFAULT_NODE_BUDGET);
+	// settings of the ANYTIME search
+	initialWeight = agent.readProperty("initial-weight", Double.class,
+		DEFAULT_INITIAL_WEIGHT);
+	planMargin = agent.readProperty("plan-margin", Long.class,
+		DEFAULT_PLAN_MARGIN);
+	// number of threads of the PARALLEL_BFS search
+	parallelism = agent.readProperty("parallelism", Integer.class, Runtime
+		.getRuntime().availableProcessors());
+	// settings of the EXTERNAL_BFS search
+	scratchDirectory = new File(agent.readProperty("scratch-directory",
+		String.class, System.getProperty("java.io.tmpdir")));
+	memoryBudget = agent.readProperty("memory-budget", Long.class,
+		DEFAULT_MEMORY_BUDGET) * 1024 * 1024;
+	// number of states kept per level by the BEAM search
+	beamWidth = agent.readProperty("beam-width", Integer.class,
+		DEFAULT_BEAM_WIDTH);
+
+	// file where the metrics of the plans are logged
+	metricsLog = agent.readProperty("metrics-log", String.class, null);
+
+	incrementalSearch = new IncrementalSearch(topology);
+	jointPlanner = new JointPlanner(agent.vehicles(), topology, parallelism,
+		beamWidth);
+
+	// this code is used to get the timeouts
+	LogistSettings ls = null;
+	try {
+	    ls = Parsers.parseSettings("config/settings_default.xml");
+	} catch (Exception exc) {
+	    System.out
+		    .println("There was a problem loading the configuration file.");
+	}
+	timeout_plan = ls != null ? ls.get(LogistSettings.TimeoutKey.PLAN)
+		: Long.MAX_VALUE / 2;
     }
 
     @Override
     public Plan plan(Vehicle vehicle, TaskSet tasks) {
+	// stop some ms before the timeout, because we do not want to
+	// effectively timeout (and throw a TimeOutException)
+	long deadline = System.nanoTime()
+		+ TimeUnit.MILLISECONDS.toNanos(Math.max(timeout_plan
+			- planMargin, 0));
 	Plan plan;
-	long start = 0;
-	long end = 0;
+	metrics = new SearchMetrics(algorithm.name(), tasks.size());
+	metrics.start();
 
 	// Compute the plan with the selected algorithm.
 	switch (algorithm) {
+	case PARALLEL_BFS:
+	    System.out.println("Running PARALLEL_BFS Algorithm");
+	    plan = parallelBfsPlan(vehicle, tasks);
+	    break;
+	case EXTERNAL_BFS:
+	    System.out.println("Running EXTERNAL_BFS Algorithm");
+	    plan = externalBfsPlan(vehicle, tasks);
+	    break;
 	case ASTAR:
 	    // ...
 	    System.out.println("Running ASTAR Algorithm");
-	    start = System.currentTimeMillis();
-	    plan = astarPlan(vehicle, tasks);
-	    end = System.currentTimeMillis();
-	    System.out.println("Execution time: " + (end - start) + "ms");
+	    plan = nodePool ? pooledPlan(vehicle, tasks, true) : astarPlan(
+		    vehicle, tasks);
 	    break;
 	case BFS:
 	    // ...
 	    System.out.println("Running BFS Algorithm");
-	    start = System.currentTimeMillis();
-	    plan = bfsPlan(vehicle, tasks);
-	    end = System.currentTimeMillis();
-	    System.out.println("Execution time: " + (end - start) + "ms");
+	    plan = nodePool ? pooledPlan(vehicle, tasks, false) : bfsPlan(
+		    vehicle, tasks);
+	    break;
+	case IDASTAR:
+	    System.out.println("Running IDASTAR Algorithm");
+	    plan = idastarPlan(vehicle, tasks);
+	    break;
+	case ANYTIME:
+	    System.out.println("Running ANYTIME Algorithm");
+	    plan = anytimePlan(vehicle, tasks, deadline);
+	    break;
+	case DP:
+	    System.out.println("Running DP Algorithm");
+	    plan = dpPlan(vehicle, tasks);
+	    break;
+	case INCREMENTAL:
+	    System.out.println("Running INCREMENTAL Algorithm");
+	    plan = incrementalPlan(vehicle, tasks);
+	    break;
+	case MACRO:
+	    System.out.println("Running MACRO Algorithm");
+	    plan = macroPlan(vehicle, tasks);
+	    break;
+	case BRANCH_AND_BOUND:
+	    System.out.println("Running BRANCH_AND_BOUND Algorithm");
+	    plan = branchAndBoundPlan(vehicle, tasks);
+	    break;
+	case BEAM:
+	    System.out.println("Running BEAM Algorithm");
+	    plan = beamPlan(vehicle, tasks);
+	    break;
+	case JOINT:
+	    System.out.println("Running JOINT Algorithm");
+	    plan = jointPlan(vehicle, tasks);
 	    break;
 	case NAIVE:
 	    plan = naivePlan(vehicle, tasks);
@@ -93,6 +216,55 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	default:
 	    throw new AssertionError("Should not happen.");
 	}
+
+	metrics.stop();
+	System.out.println("Execution time: "
+		+ TimeUnit.NANOSECONDS.toMillis(metrics.wallTime()) + "ms");
+	if (metricsLog != null) {
+	    try {
+		metrics.log(metricsLog);
+	    } catch (IOException e) {
+		System.out.println("Could not write the metrics to "
+			+ metricsLog + ": " + e.getMessage());
+	    }
+	}
+	return plan;
+    }
+
+    /**
+     * The measures of the last plan computed.
+     */
+    public SearchMetrics metrics() {
+	return metrics;
+    }
+
+    private SearchProblem searchProblem(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = new SearchProblem(vehicle, tasks,
+		carriedTasks, topology);
+	// timing every heuristic has a cost: only when the metrics are logged
+	if (metricsLog != null) {
+	    problem.setMetrics(metrics);
+	}
+	return problem;
+    }
+
+    private Plan pooledPlan(Vehicle vehicle, TaskSet tasks, boolean byCost) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	PooledSearch search = new PooledSearch(problem, byCost);
+
+	Plan plan = search.createPlan();
+	metrics.setGeneratedNodes(search.numberOfGeneratedStates());
+	metrics.setExpandedNodes(search.numberOfExpandedStates());
+	metrics.setPrunedDuplicates(search.numberOfDuplicateStates());
+	metrics.setOpenPeak(search.largestOpenSize());
+	metrics.setClosedSize(search.numberOfExpandedStates());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb states: " + search.largestOpenSize());
+	System.out.println("nb nodes: " + search.numberOfNodes());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
 	return plan;
     }
 
@@ -141,6 +313,7 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
 	int number_of_iterations = 0;
 	int number_of_states = 0;
+	long number_of_generated_states = 0;
 
 	while (!Q.isEmpty()) {
 	    currentState = Q.pop();
@@ -157,6 +330,7 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	    if (!loopCheck.contains(currentState)) {
 		loopCheck.add(currentState);
 		S = currentState.getSuccessors(agent);
+		number_of_generated_states += S.size();
 		Q.addAll(S);
 	    }
 
@@ -167,6 +341,14 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
 	}
 
+	metrics.setGeneratedNodes(number_of_generated_states);
+	metrics.setExpandedNodes(loopCheck.size());
+	// the states popped again after their first expansion
+	metrics.setPrunedDuplicates(number_of_iterations - loopCheck.size());
+	metrics.setOpenPeak(number_of_states);
+	metrics.setClosedSize(loopCheck.size());
+	metrics.setCost(minimumCost);
+
 	System.out.println("nb states: " + number_of_states);
 	System.out.println("cost:" + minimumCost);
 
@@ -178,6 +360,49 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	return plan;
     }
 
+    private Plan parallelBfsPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	ParallelBFSSearch search = new ParallelBFSSearch(problem, parallelism);
+
+	Plan plan = search.createPlan();
+	metrics.setGeneratedNodes(search.numberOfStates());
+	metrics.setOpenPeak(search.largestLevel());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb states: " + search.numberOfStates());
+	System.out.println("largest level: " + search.largestLevel());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan externalBfsPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	ExternalBFSSearch search = new ExternalBFSSearch(problem,
+		scratchDirectory, memoryBudget);
+
+	Plan plan;
+	try {
+	    plan = search.createPlan();
+	} catch (IOException e) {
+	    throw new UncheckedIOException("External BFS failed in "
+		    + scratchDirectory, e);
+	}
+
+	System.out.println("nb states: " + search.numberOfStates());
+	System.out.println("largest level: " + search.largestLevel());
+	metrics.setGeneratedNodes(search.numberOfStates());
+	metrics.setOpenPeak(search.largestLevel());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb runs: " + search.numberOfRuns());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
     private Plan astarPlan(final Vehicle vehicle, final TaskSet tasks) {
 	// DeliberativeState comparator: orders DeliberativeStates by increasing
 	// costs
@@ -233,6 +458,7 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
 	int number_of_iterations = 0;
 	int number_of_states = 0;
+	long number_of_generated_states = 0;
 
 	while (!Q.isEmpty()) {
 	    // retrieve the state with the least cost in the PriorityQueue
@@ -252,6 +478,7 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	    if (!loopCheck.contains(currentState)) {
 		loopCheck.add(currentState);
 		S = currentState.getSuccessors(agent);
+		number_of_generated_states += S.size();
 		// sorting and merging of the successors of the current state by
 		// increasing cost is handled by the PriorityQueue
 		// implementation
@@ -265,6 +492,14 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	    ++number_of_iterations;
 	}
 
+	metrics.setGeneratedNodes(number_of_generated_states);
+	metrics.setExpandedNodes(loopCheck.size());
+	// the states popped again after their first expansion
+	metrics.setPrunedDuplicates(number_of_iterations - loopCheck.size());
+	metrics.setOpenPeak(number_of_states);
+	metrics.setClosedSize(loopCheck.size());
+	metrics.setCost(minimumCost);
+
 	System.out.println("nb states: " + number_of_states);
 	System.out.println("cost:" + minimumCost);
 
@@ -276,6 +511,191 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 	return plan;
     }
 
+    private Plan idastarPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	// the table of a larger budget would not fit in the heap
+	int budget = Math.min(nodeBudget, TranspositionTable.availableEntries());
+	if (budget < nodeBudget) {
+	    System.out.println("node budget: " + budget + " instead of "
+		    + nodeBudget + ", the largest that fits in the heap");
+	}
+	IDAStarSearch search = new IDAStarSearch(problem, budget);
+
+	Plan plan = search.createPlan();
+	metrics.setExpandedNodes(search.numberOfExpandedStates());
+	metrics.setClosedSize(search.transpositionTableSize());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb iterations: " + search.numberOfIterations());
+	System.out.println("nb expanded states: "
+		+ search.numberOfExpandedStates());
+	System.out.println("transposition table: "
+		+ search.transpositionTableSize() + "/" + budget);
+	System.out.println("peak heap: " + search.peakHeapUsed() / (1024 * 1024)
+		+ "MB");
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan anytimePlan(Vehicle vehicle, TaskSet tasks, long deadline) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	AnytimeSearch search = new AnytimeSearch(problem, initialWeight,
+		deadline);
+
+	Plan plan = search.createPlan();
+	metrics.setGeneratedNodes(search.numberOfGeneratedStates());
+	metrics.setExpandedNodes(search.numberOfExpandedStates());
+	metrics.setPrunedDuplicates(search.numberOfDuplicateStates());
+	metrics.setOpenPeak(search.largestOpenSize());
+	metrics.setClosedSize(search.numberOfKnownStates());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb improvements: " + search.numberOfImprovements());
+	System.out.println("nb expanded states: "
+		+ search.numberOfExpandedStates());
+	System.out.println("last weight: " + search.lastWeight()
+		+ (search.isOptimal() ? " (optimal)" : "")
+		+ (search.hasTimedOut() ? " (deadline reached)" : ""));
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan dpPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	DPSearch search = new DPSearch(problem);
+
+	Plan plan = search.createPlan();
+	metrics.setExpandedNodes(search.numberOfStates());
+	metrics.setClosedSize(search.tableSize());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb states: " + search.numberOfStates());
+	System.out.println("nb task classes: " + search.numberOfClasses());
+	System.out.println("table size: " + search.tableSize());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan incrementalPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+
+	Plan plan = incrementalSearch.createPlan(problem);
+	metrics.setGeneratedNodes(incrementalSearch.numberOfGeneratedStates());
+	metrics.setExpandedNodes(incrementalSearch.numberOfExpandedStates());
+	metrics.setPrunedDuplicates(incrementalSearch
+		.numberOfDuplicateStates());
+	metrics.setOpenPeak(incrementalSearch.largestOpenSize());
+	metrics.setClosedSize(incrementalSearch.numberOfKnownStates());
+	metrics.setCost(incrementalSearch.cost());
+
+	System.out.println("nb expanded states: "
+		+ incrementalSearch.numberOfExpandedStates());
+	System.out.println("removed values: "
+		+ incrementalSearch.numberOfRemovedValues());
+	System.out.println("reused actions: "
+		+ incrementalSearch.numberOfReusedActions());
+	System.out.println("learned values: "
+		+ incrementalSearch.numberOfLearnedValues());
+	System.out.println("cost:" + incrementalSearch.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan macroPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	MacroSearch search = new MacroSearch(problem);
+
+	Plan plan = search.createPlan();
+	metrics.setGeneratedNodes(search.numberOfGeneratedStates());
+	metrics.setExpandedNodes(search.numberOfExpandedStates());
+	metrics.setPrunedDuplicates(search.numberOfDuplicateStates());
+	metrics.setOpenPeak(search.largestOpenSize());
+	metrics.setClosedSize(search.numberOfKnownStates());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb expanded states: "
+		+ search.numberOfExpandedStates());
+	System.out.println("nb generated states: "
+		+ search.numberOfGeneratedStates());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan branchAndBoundPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	BranchAndBoundSearch search = new BranchAndBoundSearch(problem);
+
+	Plan plan = search.createPlan();
+	metrics.setGeneratedNodes(search.numberOfGeneratedStates());
+	metrics.setExpandedNodes(search.numberOfExpandedStates());
+	metrics.setPrunedDuplicates(search.numberOfDuplicateStates());
+	metrics.setOpenPeak(search.largestOpenSize());
+	metrics.setClosedSize(search.numberOfKnownStates());
+	metrics.setCost(search.cost());
+
+	System.out.println("upper bound: " + search.upperBound());
+	System.out.println("nb expanded states: "
+		+ search.numberOfExpandedStates());
+	System.out.println("nb pruned states: " + search.numberOfPrunedStates());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan beamPlan(Vehicle vehicle, TaskSet tasks) {
+	SearchProblem problem = searchProblem(vehicle, tasks);
+	BeamSearch search = new BeamSearch(problem, beamWidth);
+
+	Plan plan = search.createPlan();
+	metrics.setGeneratedNodes(search.numberOfGeneratedStates());
+	metrics.setExpandedNodes(search.numberOfExpandedStates());
+	metrics.setPrunedDuplicates(search.numberOfDuplicateStates());
+	metrics.setOpenPeak(search.largestLevel());
+	metrics.setCost(search.cost());
+
+	System.out.println("nb expanded states: "
+		+ search.numberOfExpandedStates());
+	System.out.println("nb generated states: "
+		+ search.numberOfGeneratedStates());
+	System.out.println("cost:" + search.cost());
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
+    private Plan jointPlan(Vehicle vehicle, TaskSet tasks) {
+	// the first vehicle to ask for a plan triggers the planning of all the
+	// vehicles, on all the tasks
+	if (jointPlans == null) {
+	    jointPlans = jointPlanner.plan(tasks);
+	}
+	Plan plan = jointPlans.remove(vehicle.id());
+	if (plan == null) {
+	    // the previous plan of this vehicle has been cancelled: the other
+	    // vehicles keep their tasks
+	    plan = jointPlanner.replan(vehicle, tasks, vehicle.getCurrentTasks());
+	}
+
+	metrics.setCost(jointPlanner.cost(vehicle));
+
+	System.out.println("nb assigned tasks: "
+		+ jointPlanner.numberOfAssignedTasks(vehicle));
+	System.out.println("cost:" + jointPlanner.cost(vehicle));
+	System.out.println("Plan: " + plan.toString());
+
+	return plan;
+    }
+
     private Plan buildPlan(DeliberativeState state, Plan plan, List<Task> tasks) {
 	DeliberativeState previousState = state.previous();
 
@@ -329,12 +749,8 @@ public class DeliberativeTemplate implements DeliberativeBehavior {
 
     @Override
     public void planCancelled(TaskSet carriedTasks) {
-
-	if (!carriedTasks.isEmpty()) {
-	    // This cannot happen for this simple agent, but typically
-	    // you will need to consider the carriedTasks when the next
-	    // plan is computed.
-	    this.carriedTasks = carriedTasks;
-	}
+	// also when it is empty: the tasks carried when a previous plan was
+	// cancelled may have been delivered since
+	this.carriedTasks = carriedTasks;
     }
 }
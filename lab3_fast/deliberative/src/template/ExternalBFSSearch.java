@@ -0,0 +1,345 @@
+package template;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * Exhaustive BFS whose levels are stored on disk. Each level is a file of
+ * packed states sorted by key. While a level is expanded, the successors are
+ * collected in a bounded buffer on the heap; every time the buffer is full it
+ * is sorted and written as a run (all the runs of a level go to one file),
+ * and the runs are finally merged into the next level, keeping the cheapest
+ * way to reach each state (delayed duplicate detection).
+ * <p>
+ * Duplicates never need to be detected against earlier levels: a state is
+ * only reachable after a fixed number of actions (the sum of the task
+ * statuses), so it always belongs to the same level.
+ *
+ */
+public class ExternalBFSSearch {
+
+    // origins pack the index of the parent in the previous level and the task
+    // of the action
+    private static final int TASK_BITS = 8;
+    private static final long TASK_MASK = (1L << TASK_BITS) - 1;
+
+    private final SearchProblem problem;
+    private final File scratchDirectory;
+    private final long memoryBudget;
+    private final int bufferSize;
+
+    // the on-heap buffer of successors
+    private final long[] bufferKeys;
+    private final double[] bufferCosts;
+    private final long[] bufferOrigins;
+    private int bufferLength = 0;
+
+    private final List<StateFile> levels = new ArrayList<StateFile>();
+    private File directory;
+    private int numberOfRuns = 0;
+
+    private double cost;
+    private long numberOfStates = 0;
+    private long largestLevel = 0;
+
+    /**
+     * @param memoryBudget
+     *            the size in bytes of the buffer of successors kept on the
+     *            heap, and of the read buffers of all the runs of a merge
+     */
+    public ExternalBFSSearch(SearchProblem problem, File scratchDirectory,
+	    long memoryBudget) {
+	if (problem.numberOfTasks() > TASK_MASK) {
+	    throw new IllegalArgumentException("Too many tasks for the external BFS");
+	}
+	this.problem = problem;
+	this.scratchDirectory = scratchDirectory;
+	this.memoryBudget = memoryBudget;
+	this.bufferSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8,
+		memoryBudget / StateFile.RECORD_SIZE));
+	this.bufferKeys = new long[bufferSize];
+	this.bufferCosts = new double[bufferSize];
+	this.bufferOrigins = new long[bufferSize];
+    }
+
+    public Plan createPlan() throws IOException {
+	if (!scratchDirectory.isDirectory() && !scratchDirectory.mkdirs()) {
+	    throw new IOException("Cannot create the scratch directory "
+		    + scratchDirectory);
+	}
+	directory = Files.createTempDirectory(scratchDirectory.toPath(),
+		"bfs").toFile();
+	try {
+	    return search();
+	} finally {
+	    for (StateFile level : levels) {
+		level.delete();
+	    }
+	    if (!directory.delete()) {
+		directory.deleteOnExit();
+	    }
+	}
+    }
+
+    private Plan search() throws IOException {
+	StateFile level = newLevel();
+	level.append(problem.key(problem.packStatus(problem.initialStatus()),
+		problem.initialCity()), 0, 0);
+
+	int numberOfLevels = problem.numberOfActions();
+	for (int depth = 0; depth < numberOfLevels; ++depth) {
+	    StateFile runs = new StateFile(new File(directory, "runs" + depth));
+	    // the index of the first record of each run, and the size of
+	    // the file at the end
+	    List<Long> runStarts = new ArrayList<Long>();
+
+	    try {
+		StateFile.Reader reader = level.reader();
+		while (reader.hasRecord()) {
+		    expand(reader.key(), reader.cost(), reader.index(), runs,
+			    runStarts);
+		    reader.next();
+		}
+		if (bufferLength > 0) {
+		    writeRun(runs, runStarts);
+		}
+		runStarts.add(runs.size());
+
+		level = newLevel();
+		merge(runs, runStarts, level);
+	    } finally {
+		runs.delete();
+	    }
+
+	    if (level.size() == 0) {
+		throw new IllegalArgumentException(
+			"No plan can deliver all tasks with capacity "
+				+ problem.capacity());
+	    }
+	    numberOfStates += level.size();
+	    largestLevel = Math.max(largestLevel, level.size());
+	}
+
+	// all the states of the last level are final states
+	long best = 0;
+	cost = Double.POSITIVE_INFINITY;
+	StateFile.Reader reader = level.reader();
+	while (reader.hasRecord()) {
+	    if (reader.cost() < cost) {
+		best = reader.index();
+		cost = reader.cost();
+	    }
+	    reader.next();
+	}
+
+	return buildPlan(best, numberOfLevels);
+    }
+
+    private void expand(long key, double cost, long index, StateFile runs,
+	    List<Long> runStarts) throws IOException {
+	long packedStatus = problem.packedStatus(key);
+	City city = problem.city(key);
+	int charge = problem.charge(packedStatus);
+
+	int numberOfTasks = problem.numberOfTasks();
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    int status = (int) (packedStatus >>> (SearchProblem.BITS_PER_TASK * i))
+		    & SearchProblem.STATUS_MASK;
+	    if (status == DeliberativeState.DELIVERED
+		    || (status == DeliberativeState.NOT_PICKED_UP && charge
+			    + problem.task(i).weight > problem.capacity())) {
+		continue;
+	    }
+
+	    if (bufferLength == bufferSize) {
+		writeRun(runs, runStarts);
+	    }
+
+	    City destination = problem.destination(i, status);
+	    bufferKeys[bufferLength] = problem.key(packedStatus
+		    + problem.statusIncrement(i), destination);
+	    bufferCosts[bufferLength] = cost + problem.cost(city, destination);
+	    bufferOrigins[bufferLength] = (index << TASK_BITS) | i;
+	    ++bufferLength;
+	}
+    }
+
+    /**
+     * Sorts the buffer, and appends it to the runs as a new run without
+     * duplicates.
+     */
+    private void writeRun(StateFile runs, List<Long> runStarts)
+	    throws IOException {
+	sort(0, bufferLength - 1);
+
+	runStarts.add(runs.size());
+	++numberOfRuns;
+	for (int j = 0; j < bufferLength; ++j) {
+	    // equal keys are sorted by cost: only the first one is kept
+	    if (j == 0 || bufferKeys[j] != bufferKeys[j - 1]) {
+		runs.append(bufferKeys[j], bufferCosts[j], bufferOrigins[j]);
+	    }
+	}
+	bufferLength = 0;
+    }
+
+    /**
+     * Merges the sorted runs into the level, keeping the cheapest record of
+     * each state. Run r holds the records from runStarts[r] to runStarts[r +
+     * 1] (excluded) of the runs. The memory budget is shared between the
+     * readers of the runs, each of which buffers at least one record.
+     */
+    private void merge(StateFile runs, List<Long> runStarts, StateFile level)
+	    throws IOException {
+	int numberOfRuns = runStarts.size() - 1;
+	PriorityQueue<StateFile.Reader> cursors = new PriorityQueue<StateFile.Reader>(
+		Math.max(1, numberOfRuns), new Comparator<StateFile.Reader>() {
+
+		    @Override
+		    public int compare(StateFile.Reader o1, StateFile.Reader o2) {
+			return Long.compare(o1.key(), o2.key());
+		    }
+		});
+	long runBudget = memoryBudget / Math.max(1, numberOfRuns);
+	int readerRecords = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+		runBudget / StateFile.RECORD_SIZE));
+	for (int r = 0; r < numberOfRuns; ++r) {
+	    StateFile.Reader cursor = runs.reader(runStarts.get(r),
+		    runStarts.get(r + 1), readerRecords);
+	    if (cursor.hasRecord()) {
+		cursors.add(cursor);
+	    }
+	}
+
+	boolean hasRecord = false;
+	long key = 0;
+	double cost = 0;
+	long origin = 0;
+
+	while (!cursors.isEmpty()) {
+	    StateFile.Reader cursor = cursors.poll();
+	    long runKey = cursor.key();
+	    double runCost = cursor.cost();
+	    long runOrigin = cursor.origin();
+
+	    if (hasRecord && runKey == key) {
+		if (runCost < cost || (runCost == cost && runOrigin < origin)) {
+		    cost = runCost;
+		    origin = runOrigin;
+		}
+	    } else {
+		if (hasRecord) {
+		    level.append(key, cost, origin);
+		}
+		hasRecord = true;
+		key = runKey;
+		cost = runCost;
+		origin = runOrigin;
+	    }
+
+	    cursor.next();
+	    if (cursor.hasRecord()) {
+		cursors.add(cursor);
+	    }
+	}
+	if (hasRecord) {
+	    level.append(key, cost, origin);
+	}
+    }
+
+    // quicksort of the buffer by key, then cost, then origin
+    private void sort(int low, int high) {
+	while (high - low > 0) {
+	    int middle = (low + high) >>> 1;
+	    swap(middle, high);
+
+	    int store = low;
+	    for (int j = low; j < high; ++j) {
+		if (lessThan(j, high)) {
+		    swap(j, store++);
+		}
+	    }
+	    swap(store, high);
+
+	    // recurse on the smaller part to bound the stack depth
+	    if (store - low < high - store) {
+		sort(low, store - 1);
+		low = store + 1;
+	    } else {
+		sort(store + 1, high);
+		high = store - 1;
+	    }
+	}
+    }
+
+    private boolean lessThan(int i, int j) {
+	if (bufferKeys[i] != bufferKeys[j]) {
+	    return bufferKeys[i] < bufferKeys[j];
+	}
+	if (bufferCosts[i] != bufferCosts[j]) {
+	    return bufferCosts[i] < bufferCosts[j];
+	}
+	return bufferOrigins[i] < bufferOrigins[j];
+    }
+
+    private void swap(int i, int j) {
+	long key = bufferKeys[i];
+	bufferKeys[i] = bufferKeys[j];
+	bufferKeys[j] = key;
+	double cost = bufferCosts[i];
+	bufferCosts[i] = bufferCosts[j];
+	bufferCosts[j] = cost;
+	long origin = bufferOrigins[i];
+	bufferOrigins[i] = bufferOrigins[j];
+	bufferOrigins[j] = origin;
+    }
+
+    private StateFile newLevel() throws IOException {
+	StateFile level = new StateFile(new File(directory, "level"
+		+ levels.size()));
+	levels.add(level);
+	return level;
+    }
+
+    private Plan buildPlan(long index, int numberOfLevels) throws IOException {
+	int[] taskIndices = new int[numberOfLevels];
+	int[] statuses = new int[numberOfLevels];
+	int[] tasksStatus = problem.initialStatus();
+
+	// walk up the origins to find the task of each action
+	for (int depth = numberOfLevels; depth > 0; --depth) {
+	    long origin = levels.get(depth).origin(index);
+	    taskIndices[depth - 1] = (int) (origin & TASK_MASK);
+	    index = origin >>> TASK_BITS;
+	}
+	// replay the actions to find the status each of them leads to
+	for (int k = 0; k < numberOfLevels; ++k) {
+	    statuses[k] = ++tasksStatus[taskIndices[k]];
+	}
+	return problem.buildPlan(taskIndices, statuses, numberOfLevels);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfStates() {
+	return numberOfStates;
+    }
+
+    public long largestLevel() {
+	return largestLevel;
+    }
+
+    public int numberOfRuns() {
+	return numberOfRuns;
+    }
+}
@@ -0,0 +1,198 @@
+package template;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * Iterative deepening A* with a bounded transposition table. Instead of
+ * keeping every visited state in memory like BFS and A*, the state space is
+ * explored depth-first with an increasing bound on f = g + h: only the
+ * current path and at most nodeBudget packed states are kept in memory, at
+ * the price of re-expanding states between two iterations. Since the
+ * heuristic is admissible, the first plan found is optimal.
+ *
+ */
+public class IDAStarSearch {
+
+    // used to compare costs computed by summing distances in different orders
+    private static final double EPSILON = 1e-6;
+    // the heap usage is sampled every 65536 expanded states
+    private static final long HEAP_SAMPLING_MASK = 0xFFFF;
+
+    private final SearchProblem problem;
+    private final TranspositionTable transpositionTable;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    // the state of the depth-first search, updated in place
+    private final int[] tasksStatus;
+    private long packedStatus;
+    private int charge;
+    private int remainingTasks;
+
+    // the current path: action k brings task pathTasks[k] to pathStatuses[k]
+    private final int[] pathTasks;
+    private final int[] pathStatuses;
+
+    private boolean found;
+    private int solutionLength;
+    private double solutionCost;
+
+    private long numberOfExpandedStates = 0;
+    private int numberOfIterations = 0;
+    private long peakHeapUsed = 0;
+
+    public IDAStarSearch(SearchProblem problem, int nodeBudget) {
+	this.problem = problem;
+	this.transpositionTable = new TranspositionTable(nodeBudget);
+
+	int numberOfTasks = problem.numberOfTasks();
+	this.tasksStatus = problem.initialStatus();
+	this.pathTasks = new int[2 * numberOfTasks];
+	this.pathStatuses = new int[2 * numberOfTasks];
+    }
+
+    public Plan createPlan() {
+	packedStatus = problem.packStatus(tasksStatus);
+	charge = problem.initialCharge();
+	remainingTasks = 0;
+	for (int status : tasksStatus) {
+	    if (status != DeliberativeState.DELIVERED) {
+		++remainingTasks;
+	    }
+	}
+
+	City initialCity = problem.initialCity();
+	double bound = problem.heuristic(tasksStatus, initialCity);
+	found = false;
+
+	while (!found) {
+	    transpositionTable.clear();
+	    ++numberOfIterations;
+
+	    double t = search(initialCity, 0, bound, 0);
+	    updatePeakHeapUsed();
+
+	    if (!found) {
+		if (t == Double.POSITIVE_INFINITY) {
+		    throw new IllegalArgumentException(
+			    "No plan can deliver all tasks with capacity "
+				    + problem.capacity());
+		}
+		bound = t;
+	    }
+	}
+
+	return problem.buildPlan(pathTasks, pathStatuses, solutionLength);
+    }
+
+    /**
+     * @return the smallest f exceeding the bound in the subtree of the current
+     *         state (or the cost of the plan if one has been found)
+     */
+    private double search(City city, double g, double bound, int depth) {
+	double f = g + problem.heuristic(tasksStatus, city);
+	if (f > bound + EPSILON) {
+	    return f;
+	}
+
+	// all tasks are delivered
+	if (remainingTasks == 0) {
+	    found = true;
+	    solutionLength = depth;
+	    solutionCost = g;
+	    return g;
+	}
+
+	// this state has already been explored in this iteration with a cost
+	// that is not higher
+	if (!transpositionTable.offer(problem.key(packedStatus, city), g)) {
+	    return Double.POSITIVE_INFINITY;
+	}
+	if ((++numberOfExpandedStates & HEAP_SAMPLING_MASK) == 0) {
+	    updatePeakHeapUsed();
+	}
+
+	double minimum = Double.POSITIVE_INFINITY;
+	int numberOfTasks = tasksStatus.length;
+
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    int status = tasksStatus[i];
+	    if (status == DeliberativeState.DELIVERED) {
+		continue;
+	    }
+
+	    int weight = problem.task(i).weight;
+	    int updatedCharge;
+	    if (status == DeliberativeState.NOT_PICKED_UP) {
+		updatedCharge = charge + weight;
+		if (updatedCharge > problem.capacity()) {
+		    continue;
+		}
+	    } else {
+		updatedCharge = charge - weight;
+	    }
+
+	    City destination = problem.destination(i, status);
+	    double updatedCost = g + problem.cost(city, destination);
+
+	    // apply the action
+	    tasksStatus[i] = status + 1;
+	    packedStatus += problem.statusIncrement(i);
+	    int previousCharge = charge;
+	    charge = updatedCharge;
+	    if (status == DeliberativeState.PICKED_UP) {
+		--remainingTasks;
+	    }
+	    pathTasks[depth] = i;
+	    pathStatuses[depth] = status + 1;
+
+	    double t = search(destination, updatedCost, bound, depth + 1);
+
+	    // undo the action
+	    tasksStatus[i] = status;
+	    packedStatus -= problem.statusIncrement(i);
+	    charge = previousCharge;
+	    if (status == DeliberativeState.PICKED_UP) {
+		++remainingTasks;
+	    }
+
+	    if (found) {
+		return t;
+	    }
+	    if (t < minimum) {
+		minimum = t;
+	    }
+	}
+	return minimum;
+    }
+
+    private void updatePeakHeapUsed() {
+	long used = memory.getHeapMemoryUsage().getUsed();
+	if (used > peakHeapUsed) {
+	    peakHeapUsed = used;
+	}
+    }
+
+    public double cost() {
+	return solutionCost;
+    }
+
+    public long numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public int numberOfIterations() {
+	return numberOfIterations;
+    }
+
+    public int transpositionTableSize() {
+	return transpositionTable.size();
+    }
+
+    public long peakHeapUsed() {
+	return peakHeapUsed;
+    }
+}
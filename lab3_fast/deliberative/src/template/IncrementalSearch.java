@@ -0,0 +1,435 @@
+package template;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/**
+ * A* that keeps what it learned from one plan to the next, so that the plan
+ * computed after planCancelled() reuses the previous searches instead of
+ * starting from scratch.
+ * <p>
+ * The states are identified by the status of the tasks that are not delivered
+ * yet and by the current city. Each task keeps the same slot in the packed
+ * state from one plan to the next, and the slot of a task that disappeared is
+ * given to a new task once the values that mention it are removed. The remaining cost of such a state
+ * depends neither on the tasks delivered before nor on the tasks taken by
+ * other vehicles, so the graph of these states never changes, and two kinds of
+ * values remain valid from one search to the next:
+ * <ul>
+ * <li>the exact remaining cost of the states of the plans found, and the
+ * action to take there: like the goal distances kept by D* Lite, they let a
+ * search stop as soon as it reaches one of these states;</li>
+ * <li>the remaining cost C - g of every state expanded by a search of cost C,
+ * which is an admissible heuristic better informed than the initial one
+ * (Adaptive A*).</li>
+ * </ul>
+ * When tasks disappear (delivered, or taken by another company), only the
+ * values of the states that mention them are invalidated, and removed.
+ *
+ */
+public class IncrementalSearch {
+
+    // used to compare costs computed by summing distances in different orders
+    private static final double EPSILON = 1e-6;
+    // each task not delivered yet is stored with the code status + 1 on 2
+    // bits at the position of its slot, above the id of the current city
+    private static final int BITS_PER_TASK = 2;
+    private static final long CODE_MASK = (1L << BITS_PER_TASK) - 1;
+
+    // flag of the action of the nodes whose remaining cost is known exactly
+    private static final int EXACT = NodePool.FIRST_FLAG;
+
+    private final int cityBits;
+    private final long cityMask;
+    private final List<City> cities;
+
+    // the slot of each task id in the packed states, kept across plans
+    private final Map<Integer, Integer> slotOfId = new HashMap<Integer, Integer>();
+    private final boolean[] usedSlots;
+
+    // the values are only valid for one vehicle
+    private int capacity = -1;
+    private double costPerKm = -1;
+
+    // lower bounds of the remaining cost learned by the previous searches
+    private final Map<Long, Double> heuristics = new HashMap<Long, Double>();
+    // exact remaining cost of the states of the previous plans, and the id of
+    // the task of the action taken there
+    private final Map<Long, Double> exactCosts = new HashMap<Long, Double>();
+    private final Map<Long, Integer> nextTasks = new HashMap<Long, Integer>();
+
+    // the nodes of the current search, reused by the following searches
+    private final NodePool pool = new NodePool();
+    private final NodeQueue open = new NodeQueue();
+
+    private SearchProblem problem;
+    private int[] taskIds;
+    private int[] slots;
+    private Map<Integer, Integer> indexOfId;
+
+    private double cost;
+    private long numberOfExpandedStates;
+    private long numberOfGeneratedStates;
+    private long numberOfDuplicateStates;
+    private int numberOfKnownStates;
+    private int numberOfRemovedValues;
+    private int numberOfReusedActions;
+
+    public IncrementalSearch(Topology topology) {
+	this.cities = topology.cities();
+	this.cityBits = 32 - Integer.numberOfLeadingZeros(Math.max(
+		cities.size() - 1, 1));
+	this.cityMask = (1L << cityBits) - 1;
+	this.usedSlots = new boolean[(SearchProblem.MAX_KEY_BITS - cityBits)
+		/ BITS_PER_TASK];
+    }
+
+    public Plan createPlan(SearchProblem problem) {
+	this.problem = problem;
+	numberOfExpandedStates = 0;
+	numberOfGeneratedStates = 0;
+	numberOfDuplicateStates = 0;
+	numberOfReusedActions = 0;
+
+	int numberOfTasks = problem.numberOfTasks();
+	if (numberOfTasks > usedSlots.length) {
+	    throw new IllegalArgumentException("Too many tasks ("
+		    + numberOfTasks + ") to pack a state into a long");
+	}
+	taskIds = new int[numberOfTasks];
+	indexOfId = new HashMap<Integer, Integer>();
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    taskIds[i] = problem.task(i).id;
+	    indexOfId.put(taskIds[i], i);
+	}
+
+	if (problem.capacity() != capacity
+		|| problem.costPerKm() != costPerKm) {
+	    capacity = problem.capacity();
+	    costPerKm = problem.costPerKm();
+	    numberOfRemovedValues = heuristics.size() + exactCosts.size();
+	    heuristics.clear();
+	    exactCosts.clear();
+	    nextTasks.clear();
+	    freeSlots();
+	} else {
+	    freeSlots();
+	    numberOfRemovedValues = removeObsoleteValues();
+	}
+	assignSlots();
+
+	int goal = search();
+	learn(goal);
+	return buildPlan(goal);
+    }
+
+    /**
+     * Frees the slots of the tasks which are not part of the problem anymore.
+     */
+    private void freeSlots() {
+	Iterator<Map.Entry<Integer, Integer>> entries = slotOfId.entrySet()
+		.iterator();
+	while (entries.hasNext()) {
+	    Map.Entry<Integer, Integer> entry = entries.next();
+	    if (!indexOfId.containsKey(entry.getKey())) {
+		usedSlots[entry.getValue()] = false;
+		entries.remove();
+	    }
+	}
+    }
+
+    /**
+     * Gives the first free slot to the new tasks. No value mentions a free
+     * slot anymore, so that a state where the task of a slot is delivered
+     * keeps the same remaining cost whatever task it was.
+     */
+    private void assignSlots() {
+	slots = new int[taskIds.length];
+	int freeSlot = 0;
+	for (int i = 0; i < taskIds.length; ++i) {
+	    Integer slot = slotOfId.get(taskIds[i]);
+	    if (slot == null) {
+		while (usedSlots[freeSlot]) {
+		    ++freeSlot;
+		}
+		slot = freeSlot;
+		usedSlots[slot] = true;
+		slotOfId.put(taskIds[i], slot);
+	    }
+	    slots[i] = slot;
+	}
+    }
+
+    /**
+     * Removes the values of the states that mention a task which is not part
+     * of the problem anymore: these states cannot be reached again.
+     */
+    private int removeObsoleteValues() {
+	long tasksMask = 0;
+	for (int slot : slotOfId.values()) {
+	    tasksMask |= CODE_MASK << (BITS_PER_TASK * slot);
+	}
+
+	// the next tasks are only known for states with an exact cost
+	removeObsoleteValues(nextTasks, tasksMask);
+	return removeObsoleteValues(heuristics, tasksMask)
+		+ removeObsoleteValues(exactCosts, tasksMask);
+    }
+
+    private int removeObsoleteValues(Map<Long, ?> values, long tasksMask) {
+	int removed = 0;
+	Iterator<Long> keys = values.keySet().iterator();
+	while (keys.hasNext()) {
+	    if (((keys.next() >>> cityBits) & ~tasksMask) != 0) {
+		keys.remove();
+		++removed;
+	    }
+	}
+	return removed;
+    }
+
+    private int search() {
+	pool.clear();
+	open.clear();
+	// the smallest cost with which each state has been reached
+	Map<Long, Double> bestCosts = new HashMap<Long, Double>();
+	// the cost with which each state has been expanded
+	Map<Long, Double> expanded = new HashMap<Long, Double>();
+
+	int[] tasksStatus = problem.initialStatus();
+	long codes = 0;
+	for (int i = 0; i < tasksStatus.length; ++i) {
+	    if (tasksStatus[i] != DeliberativeState.DELIVERED) {
+		codes += (long) (tasksStatus[i] + 1) << (BITS_PER_TASK
+			* slots[i]);
+	    }
+	}
+
+	City initialCity = problem.initialCity();
+	long initialKey = (codes << cityBits) | initialCity.id;
+	Double initialExact = exactCosts.get(initialKey);
+	open.add(pool.add(initialKey, 0, NodePool.NO_PARENT,
+		initialExact != null ? EXACT : 0),
+		initialExact != null ? initialExact : heuristic(initialKey,
+			tasksStatus, initialCity));
+	bestCosts.put(initialKey, 0.0);
+
+	int numberOfTasks = problem.numberOfTasks();
+
+	while (!open.isEmpty()) {
+	    double f = open.peekPriority();
+	    int node = open.poll();
+	    long nodeKey = pool.key(node);
+	    double g = pool.cost(node);
+
+	    // the node has been reached again with a smaller cost
+	    Double knownCost = bestCosts.get(nodeKey);
+	    if (knownCost != null && knownCost < g) {
+		++numberOfDuplicateStates;
+		continue;
+	    }
+
+	    // the rest of the plan is known: no other node can lead to a
+	    // cheaper plan, since their f is a lower bound of their cost
+	    if ((nodeKey >>> cityBits) == 0
+		    || (pool.action(node) & EXACT) != 0) {
+		learnExpanded(expanded, f);
+		numberOfKnownStates = bestCosts.size();
+		cost = f;
+		return node;
+	    }
+
+	    expanded.put(nodeKey, g);
+	    ++numberOfExpandedStates;
+	    City city = cities.get((int) (nodeKey & cityMask));
+	    int charge = unpack(nodeKey, tasksStatus);
+
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		int status = tasksStatus[i];
+		if (status == DeliberativeState.DELIVERED) {
+		    continue;
+		}
+
+		long codesIncrement = 1L << (BITS_PER_TASK * slots[i]);
+		if (status == DeliberativeState.NOT_PICKED_UP) {
+		    if (charge + problem.task(i).weight > problem.capacity()) {
+			continue;
+		    }
+		} else {
+		    // the code of a delivered task is 0
+		    codesIncrement = -2 * codesIncrement;
+		}
+
+		City destination = problem.destination(i, status);
+		double updatedCost = g + problem.cost(city, destination);
+		long key = (((nodeKey >>> cityBits) + codesIncrement)
+			<< cityBits) | destination.id;
+
+		Double previousCost = bestCosts.get(key);
+		if (previousCost != null && previousCost <= updatedCost) {
+		    ++numberOfDuplicateStates;
+		    continue;
+		}
+		bestCosts.put(key, updatedCost);
+		++numberOfGeneratedStates;
+
+		Double exact = exactCosts.get(key);
+		double h;
+		int action = NodePool.action(i, status + 1);
+		if (exact != null) {
+		    h = exact;
+		    action |= EXACT;
+		} else {
+		    tasksStatus[i] = status + 1;
+		    h = heuristic(key, tasksStatus, destination);
+		    tasksStatus[i] = status;
+		}
+
+		open.add(pool.add(key, updatedCost, node, action), updatedCost
+			+ h);
+	    }
+	}
+	throw new IllegalArgumentException(
+		"No plan can deliver all tasks with capacity "
+			+ problem.capacity());
+    }
+
+    /**
+     * Reads the status of the tasks from a state key.
+     *
+     * @return the load of the vehicle in this state
+     */
+    private int unpack(long key, int[] tasksStatus) {
+	long codes = key >>> cityBits;
+	int charge = 0;
+	for (int i = 0; i < tasksStatus.length; ++i) {
+	    int code = (int) (codes >>> (BITS_PER_TASK * slots[i]))
+		    & (int) CODE_MASK;
+	    tasksStatus[i] = code == 0 ? DeliberativeState.DELIVERED : code - 1;
+	    if (tasksStatus[i] == DeliberativeState.PICKED_UP) {
+		charge += problem.task(i).weight;
+	    }
+	}
+	return charge;
+    }
+
+    /**
+     * The best of the initial heuristic and of the one learned by the
+     * previous searches.
+     */
+    private double heuristic(long key, int[] tasksStatus, City city) {
+	double h = problem.heuristic(tasksStatus, city);
+	Double learned = heuristics.get(key);
+	return learned != null && learned > h ? learned : h;
+    }
+
+    /**
+     * Every expanded state s has been reached with a cost g(s) at least as
+     * large as its distance from the start, so its remaining cost is at least
+     * cost - g(s), where cost is the cost of the optimal plan.
+     */
+    private void learnExpanded(Map<Long, Double> expanded, double cost) {
+	for (Map.Entry<Long, Double> entry : expanded.entrySet()) {
+	    double h = cost - entry.getValue();
+	    Double learned = heuristics.get(entry.getKey());
+	    if (learned == null || h > learned + EPSILON) {
+		heuristics.put(entry.getKey(), h);
+	    }
+	}
+    }
+
+    /**
+     * Remembers the exact remaining cost of the states of the plan found, and
+     * the action taken there.
+     */
+    private void learn(int goal) {
+	if ((pool.action(goal) & EXACT) == 0) {
+	    exactCosts.put(pool.key(goal), 0.0);
+	}
+	int node = goal;
+	while (pool.parent(node) != NodePool.NO_PARENT) {
+	    int parent = pool.parent(node);
+	    exactCosts.put(pool.key(parent), cost - pool.cost(parent));
+	    nextTasks.put(pool.key(parent),
+		    taskIds[NodePool.taskIndex(pool.action(node))]);
+	    heuristics.remove(pool.key(parent));
+	    node = parent;
+	}
+    }
+
+    private Plan buildPlan(int goal) {
+	int length = problem.numberOfActions();
+	int[] taskIndices = new int[length];
+	int[] statuses = new int[length];
+	int prefixLength = pool.path(goal, taskIndices, statuses);
+
+	// the rest of the plan is the one remembered from the previous plans
+	int[] tasksStatus = new int[problem.numberOfTasks()];
+	long key = pool.key(goal);
+	unpack(key, tasksStatus);
+	for (int k = prefixLength; k < length; ++k) {
+	    int i = indexOfId.get(nextTasks.get(key));
+	    int status = tasksStatus[i];
+
+	    long codesIncrement = 1L << (BITS_PER_TASK * slots[i]);
+	    if (status == DeliberativeState.PICKED_UP) {
+		codesIncrement = -2 * codesIncrement;
+	    }
+	    key = (((key >>> cityBits) + codesIncrement) << cityBits)
+		    | problem.destination(i, status).id;
+
+	    tasksStatus[i] = status + 1;
+	    taskIndices[k] = i;
+	    statuses[k] = status + 1;
+	}
+	numberOfReusedActions = length - prefixLength;
+
+	return problem.buildPlan(taskIndices, statuses, length);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public long numberOfGeneratedStates() {
+	return numberOfGeneratedStates;
+    }
+
+    /**
+     * The number of successors dropped and of nodes skipped because their
+     * state had already been reached with a smaller cost.
+     */
+    public long numberOfDuplicateStates() {
+	return numberOfDuplicateStates;
+    }
+
+    public int largestOpenSize() {
+	return open.peakSize();
+    }
+
+    public int numberOfKnownStates() {
+	return numberOfKnownStates;
+    }
+
+    public int numberOfRemovedValues() {
+	return numberOfRemovedValues;
+    }
+
+    public int numberOfReusedActions() {
+	return numberOfReusedActions;
+    }
+
+    public int numberOfLearnedValues() {
+	return heuristics.size() + exactCosts.size();
+    }
+}
@@ -0,0 +1,217 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+
+/**
+ * Plans for all the vehicles of a company together, so that no task is picked
+ * up by two vehicles (which would cancel the plan of the second one). The
+ * tasks are first partitioned among the vehicles, each task going to the
+ * closest vehicle that still has room for it; then the plan of every vehicle
+ * is computed by an optimal search on its own tasks, all vehicles in
+ * parallel.
+ * <p>
+ * When the plan of one vehicle is cancelled, only this vehicle plans again,
+ * on the tasks it was assigned that are still available: the plans of the
+ * other vehicles remain valid.
+ *
+ */
+public class JointPlanner {
+
+    private final List<Vehicle> vehicles;
+    private final Topology topology;
+    private final int parallelism;
+    // the width of the beam search used when a vehicle has too many tasks
+    // for the DP
+    private final int beamWidth;
+
+    // the tasks assigned to each vehicle (by vehicle id)
+    private final Map<Integer, List<Task>> assignments;
+    private final Map<Integer, Double> costs;
+
+    public JointPlanner(List<Vehicle> vehicles, Topology topology,
+	    int parallelism, int beamWidth) {
+	this.vehicles = vehicles;
+	this.topology = topology;
+	this.parallelism = Math.max(1, Math.min(parallelism, vehicles.size()));
+	this.beamWidth = beamWidth;
+	this.assignments = new HashMap<Integer, List<Task>>();
+	this.costs = new HashMap<Integer, Double>();
+    }
+
+    /**
+     * Partitions the tasks among the vehicles and plans every vehicle.
+     *
+     * @return the plan of each vehicle (by vehicle id)
+     */
+    public Map<Integer, Plan> plan(TaskSet tasks) {
+	partition(tasks);
+
+	ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+	try {
+	    Map<Integer, Future<Plan>> futures;
+	    futures = new HashMap<Integer, Future<Plan>>();
+	    for (final Vehicle vehicle : vehicles) {
+		final TaskSet vehicleTasks = assignedTasks(vehicle, tasks);
+		Callable<Plan> search = new Callable<Plan>() {
+
+		    @Override
+		    public Plan call() {
+			return vehiclePlan(vehicle, vehicleTasks,
+				vehicle.getCurrentTasks());
+		    }
+		};
+		futures.put(vehicle.id(), executor.submit(search));
+	    }
+
+	    Map<Integer, Plan> plans = new HashMap<Integer, Plan>();
+	    for (Map.Entry<Integer, Future<Plan>> entry : futures.entrySet()) {
+		plans.put(entry.getKey(), entry.getValue().get());
+	    }
+	    return plans;
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IllegalStateException("Joint planning interrupted", e);
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException) {
+		throw (RuntimeException) e.getCause();
+	    }
+	    throw new IllegalStateException(e.getCause());
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    /**
+     * Plans again for one vehicle, whose plan has been cancelled: it keeps the
+     * tasks it was assigned that are still available.
+     */
+    public Plan replan(Vehicle vehicle, TaskSet tasks, TaskSet carriedTasks) {
+	return vehiclePlan(vehicle, assignedTasks(vehicle, tasks),
+		carriedTasks);
+    }
+
+    /**
+     * Assigns every task to the closest vehicle (from its current city to the
+     * pickup city of the task) among those that can carry it and have been
+     * assigned less than their share of the tasks. The tasks closest to a
+     * vehicle are assigned first.
+     */
+    private void partition(TaskSet tasks) {
+	assignments.clear();
+	for (Vehicle vehicle : vehicles) {
+	    assignments.put(vehicle.id(), new ArrayList<Task>());
+	}
+	int share = (tasks.size() + vehicles.size() - 1) / vehicles.size();
+
+	List<Task> sortedTasks = new ArrayList<Task>(tasks);
+	final Map<Task, Double> closestDistances = new HashMap<Task, Double>();
+	for (Task task : sortedTasks) {
+	    double closest = Double.POSITIVE_INFINITY;
+	    for (Vehicle vehicle : vehicles) {
+		closest = Math.min(closest,
+			vehicle.getCurrentCity().distanceTo(task.pickupCity));
+	    }
+	    closestDistances.put(task, closest);
+	}
+	Collections.sort(sortedTasks, new Comparator<Task>() {
+
+	    @Override
+	    public int compare(Task o1, Task o2) {
+		return Double.compare(closestDistances.get(o1),
+			closestDistances.get(o2));
+	    }
+	});
+
+	for (Task task : sortedTasks) {
+	    Vehicle best = null;
+	    double bestDistance = Double.POSITIVE_INFINITY;
+	    for (boolean respectShare : new boolean[] { true, false }) {
+		for (Vehicle vehicle : vehicles) {
+		    if (task.weight > vehicle.capacity()
+			    || (respectShare && assignments.get(vehicle.id())
+				    .size() >= share)) {
+			continue;
+		    }
+		    double distance = vehicle.getCurrentCity().distanceTo(
+			    task.pickupCity);
+		    if (distance < bestDistance) {
+			bestDistance = distance;
+			best = vehicle;
+		    }
+		}
+		if (best != null) {
+		    break;
+		}
+	    }
+	    if (best == null) {
+		throw new IllegalArgumentException("No vehicle can carry "
+			+ task);
+	    }
+	    assignments.get(best.id()).add(task);
+	}
+    }
+
+    private TaskSet assignedTasks(Vehicle vehicle, TaskSet tasks) {
+	TaskSet vehicleTasks = TaskSet.noneOf(tasks);
+	List<Task> assigned = assignments.get(vehicle.id());
+	if (assigned != null) {
+	    for (Task task : assigned) {
+		if (tasks.contains(task)) {
+		    vehicleTasks.add(task);
+		}
+	    }
+	}
+	return vehicleTasks;
+    }
+
+    private Plan vehiclePlan(Vehicle vehicle, TaskSet tasks,
+	    TaskSet carriedTasks) {
+	SearchProblem problem = new SearchProblem(vehicle, tasks,
+		carriedTasks, topology);
+
+	Plan plan;
+	double cost;
+	// the vehicles are planned in parallel, each gets its share of the heap
+	if (DPSearch.fits(problem, DPSearch.availableEntries() / parallelism)) {
+	    DPSearch search = new DPSearch(problem);
+	    plan = search.createPlan();
+	    cost = search.cost();
+	} else {
+	    BeamSearch search = new BeamSearch(problem, beamWidth);
+	    plan = search.createPlan();
+	    cost = search.cost();
+	}
+	synchronized (costs) {
+	    costs.put(vehicle.id(), cost);
+	}
+	return plan;
+    }
+
+    public int numberOfAssignedTasks(Vehicle vehicle) {
+	List<Task> assigned = assignments.get(vehicle.id());
+	return assigned == null ? 0 : assigned.size();
+    }
+
+    public double cost(Vehicle vehicle) {
+	synchronized (costs) {
+	    Double cost = costs.get(vehicle.id());
+	    return cost == null ? 0 : cost;
+	}
+    }
+}
@@ -0,0 +1,275 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * A* over macro-actions: a transition moves the vehicle to another city and
+ * performs there, at no additional cost, every delivery that can be done, then
+ * picks up a subset of the tasks waiting there. The orders of the actions done
+ * in one city are not enumerated anymore, only the sets of pickups.
+ * <p>
+ * The search stays optimal: in any plan, the deliveries done when the vehicle
+ * is in a city can be moved to the first time it reaches that city without
+ * changing the cost (and they only free capacity), and the actions done
+ * during one visit can be reordered so that deliveries come first.
+ *
+ */
+public class MacroSearch {
+
+    // the subsets of pickups are enumerated with an int mask
+    private static final int MAXIMUM_PICKUPS_PER_CITY = 30;
+
+    private final SearchProblem problem;
+    private final int numberOfTasks;
+    // the packed status where all tasks are delivered
+    private final long finalStatus;
+
+    private final NodePool pool = new NodePool();
+    private final NodeQueue open = new NodeQueue();
+    // the smallest cost with which each state has been reached
+    private final Map<Long, Double> bestCosts = new HashMap<Long, Double>();
+
+    private final int[] tasksStatus;
+    private final int[] successorStatus;
+    // the tasks that can be picked up in the city of a transition
+    private final int[] pickups;
+
+    private double cost;
+    private long numberOfExpandedStates = 0;
+    private long numberOfGeneratedStates = 0;
+    private long numberOfDuplicateStates = 0;
+
+    public MacroSearch(SearchProblem problem) {
+	this.problem = problem;
+	this.numberOfTasks = problem.numberOfTasks();
+	this.tasksStatus = new int[numberOfTasks];
+	this.successorStatus = new int[numberOfTasks];
+	this.pickups = new int[numberOfTasks];
+
+	int[] delivered = new int[numberOfTasks];
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    delivered[i] = DeliberativeState.DELIVERED;
+
+	    int pickupsInCity = 0;
+	    for (int j = 0; j < numberOfTasks; ++j) {
+		if (problem.task(j).pickupCity == problem.task(i).pickupCity) {
+		    ++pickupsInCity;
+		}
+	    }
+	    if (pickupsInCity > MAXIMUM_PICKUPS_PER_CITY) {
+		throw new IllegalArgumentException("Too many tasks to pick up in "
+			+ problem.task(i).pickupCity);
+	    }
+	}
+	this.finalStatus = problem.packStatus(delivered);
+    }
+
+    public Plan createPlan() {
+	long initialKey = problem.key(
+		problem.packStatus(problem.initialStatus()),
+		problem.initialCity());
+	problem.unpackStatus(problem.packedStatus(initialKey), tasksStatus);
+	open.add(pool.add(initialKey, 0, NodePool.NO_PARENT, 0),
+		problem.heuristic(tasksStatus, problem.initialCity()));
+	bestCosts.put(initialKey, 0.0);
+
+	while (!open.isEmpty()) {
+	    int node = open.poll();
+	    long key = pool.key(node);
+	    double g = pool.cost(node);
+
+	    // the node has been reached again with a smaller cost
+	    if (bestCosts.get(key) < g) {
+		++numberOfDuplicateStates;
+		continue;
+	    }
+
+	    long packedStatus = problem.packedStatus(key);
+	    if (packedStatus == finalStatus) {
+		cost = g;
+		return buildPlan(node);
+	    }
+
+	    ++numberOfExpandedStates;
+	    City city = problem.city(key);
+	    problem.unpackStatus(packedStatus, tasksStatus);
+	    int charge = problem.charge(packedStatus);
+
+	    // the vehicle may also act in its initial city before moving
+	    if (node == 0) {
+		expandCity(node, g, packedStatus, charge, city, city);
+	    }
+	    for (City destination : targetCities(city)) {
+		expandCity(node, g, packedStatus, charge, city, destination);
+	    }
+	}
+	throw new IllegalArgumentException(
+		"No plan can deliver all tasks with capacity "
+			+ problem.capacity());
+    }
+
+    /**
+     * The cities other than the current one where an action can be done.
+     */
+    private List<City> targetCities(City city) {
+	List<City> cities = new ArrayList<City>();
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    if (tasksStatus[i] == DeliberativeState.DELIVERED) {
+		continue;
+	    }
+	    City target = problem.destination(i, tasksStatus[i]);
+	    if (target != city && !cities.contains(target)) {
+		cities.add(target);
+	    }
+	}
+	return cities;
+    }
+
+    /**
+     * Generates the transitions to the city destination: every possible
+     * delivery, then every subset of the pickups that fits in the vehicle.
+     */
+    private void expandCity(int node, double g, long packedStatus,
+	    int charge, City city, City destination) {
+	long updatedStatus = packedStatus;
+	int updatedCharge = charge;
+	int numberOfPickups = 0;
+	boolean delivers = false;
+
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    if (tasksStatus[i] == DeliberativeState.PICKED_UP
+		    && problem.task(i).deliveryCity == destination) {
+		updatedStatus += problem.statusIncrement(i);
+		updatedCharge -= problem.task(i).weight;
+		delivers = true;
+	    } else if (tasksStatus[i] == DeliberativeState.NOT_PICKED_UP
+		    && problem.task(i).pickupCity == destination) {
+		pickups[numberOfPickups++] = i;
+	    }
+	}
+
+	double updatedCost = g + problem.cost(city, destination);
+	int subsets = 1 << numberOfPickups;
+	for (int subset = delivers ? 0 : 1; subset < subsets; ++subset) {
+	    long subsetStatus = updatedStatus;
+	    int subsetCharge = updatedCharge;
+	    for (int k = 0; k < numberOfPickups; ++k) {
+		if ((subset & (1 << k)) != 0) {
+		    int i = pickups[k];
+		    subsetStatus += problem.statusIncrement(i);
+		    subsetCharge += problem.task(i).weight;
+		}
+	    }
+	    if (subsetCharge > problem.capacity()) {
+		continue;
+	    }
+	    // a task to deliver in the city where it is picked up is
+	    // delivered right away
+	    for (int k = 0; k < numberOfPickups; ++k) {
+		int i = pickups[k];
+		if ((subset & (1 << k)) != 0
+			&& problem.task(i).deliveryCity == destination) {
+		    subsetStatus += problem.statusIncrement(i);
+		}
+	    }
+	    addSuccessor(node, subsetStatus, destination, updatedCost);
+	}
+    }
+
+    private void addSuccessor(int node, long packedStatus, City city,
+	    double g) {
+	long key = problem.key(packedStatus, city);
+	Double previousCost = bestCosts.get(key);
+	if (previousCost != null && previousCost <= g) {
+	    ++numberOfDuplicateStates;
+	    return;
+	}
+	bestCosts.put(key, g);
+	++numberOfGeneratedStates;
+
+	problem.unpackStatus(packedStatus, successorStatus);
+	open.add(pool.add(key, g, node, 0),
+		g + problem.heuristic(successorStatus, city));
+    }
+
+    /**
+     * Rebuilds the actions of every transition from the statuses of the
+     * states before and after it.
+     */
+    private Plan buildPlan(int goal) {
+	int length = problem.numberOfActions();
+	int[] taskIndices = new int[length];
+	int[] statuses = new int[length];
+
+	List<Integer> transitions = new ArrayList<Integer>();
+	for (int node = goal; pool.parent(node) != NodePool.NO_PARENT;) {
+	    transitions.add(0, node);
+	    node = pool.parent(node);
+	}
+
+	int[] before = new int[numberOfTasks];
+	int[] after = new int[numberOfTasks];
+	int k = 0;
+	for (int node : transitions) {
+	    problem.unpackStatus(
+		    problem.packedStatus(pool.key(pool.parent(node))), before);
+	    problem.unpackStatus(problem.packedStatus(pool.key(node)), after);
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		if (before[i] == DeliberativeState.PICKED_UP
+			&& after[i] == DeliberativeState.DELIVERED) {
+		    taskIndices[k] = i;
+		    statuses[k++] = DeliberativeState.DELIVERED;
+		}
+	    }
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		if (before[i] == DeliberativeState.NOT_PICKED_UP
+			&& after[i] != DeliberativeState.NOT_PICKED_UP) {
+		    taskIndices[k] = i;
+		    statuses[k++] = DeliberativeState.PICKED_UP;
+		}
+	    }
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		if (before[i] == DeliberativeState.NOT_PICKED_UP
+			&& after[i] == DeliberativeState.DELIVERED) {
+		    taskIndices[k] = i;
+		    statuses[k++] = DeliberativeState.DELIVERED;
+		}
+	    }
+	}
+	return problem.buildPlan(taskIndices, statuses, k);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public long numberOfGeneratedStates() {
+	return numberOfGeneratedStates;
+    }
+
+    /**
+     * The number of successors dropped and of nodes skipped because their
+     * state had already been reached with a smaller cost.
+     */
+    public long numberOfDuplicateStates() {
+	return numberOfDuplicateStates;
+    }
+
+    public int largestOpenSize() {
+	return open.peakSize();
+    }
+
+    public int numberOfKnownStates() {
+	return bestCosts.size();
+    }
+}
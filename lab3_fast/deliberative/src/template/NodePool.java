@@ -0,0 +1,126 @@
+package template;
+
+import java.util.Arrays;
+
+/**
+ * Search nodes stored as a structure of arrays instead of one object per
+ * node: the packed state, the cost, the index of the parent and the action
+ * leading to each node are kept in parallel primitive arrays, which grow by
+ * chunks so that growing never copies the nodes already stored. A node costs
+ * 24 bytes and no object header nor reference, and the garbage collector only
+ * sees a few large arrays.
+ * <p>
+ * The plan is rebuilt by walking up the parent indices.
+ *
+ */
+public class NodePool {
+
+    public static final int NO_PARENT = -1;
+
+    // the action code packs the task index above its new status, and leaves
+    // the bits above for the flags of the search
+    private static final int STATUS_BITS = 2;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+    private static final int TASK_BITS = 16;
+    private static final int TASK_MASK = (1 << TASK_BITS) - 1;
+    public static final int FIRST_FLAG = 1 << (STATUS_BITS + TASK_BITS);
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private long[][] keys = new long[16][];
+    private double[][] costs = new double[16][];
+    private int[][] parents = new int[16][];
+    private int[][] actions = new int[16][];
+    private int size = 0;
+
+    /**
+     * @return the index of the new node
+     */
+    public int add(long key, double cost, int parent, int action) {
+	int chunk = size >>> CHUNK_BITS;
+	if (chunk == keys.length) {
+	    keys = Arrays.copyOf(keys, 2 * chunk);
+	    costs = Arrays.copyOf(costs, 2 * chunk);
+	    parents = Arrays.copyOf(parents, 2 * chunk);
+	    actions = Arrays.copyOf(actions, 2 * chunk);
+	}
+	// the chunks of a cleared pool are reused
+	if (keys[chunk] == null) {
+	    keys[chunk] = new long[CHUNK_SIZE];
+	    costs[chunk] = new double[CHUNK_SIZE];
+	    parents[chunk] = new int[CHUNK_SIZE];
+	    actions[chunk] = new int[CHUNK_SIZE];
+	}
+
+	int offset = size & CHUNK_MASK;
+	keys[chunk][offset] = key;
+	costs[chunk][offset] = cost;
+	parents[chunk][offset] = parent;
+	actions[chunk][offset] = action;
+	return size++;
+    }
+
+    public long key(int node) {
+	return keys[node >>> CHUNK_BITS][node & CHUNK_MASK];
+    }
+
+    public double cost(int node) {
+	return costs[node >>> CHUNK_BITS][node & CHUNK_MASK];
+    }
+
+    public int parent(int node) {
+	return parents[node >>> CHUNK_BITS][node & CHUNK_MASK];
+    }
+
+    public int action(int node) {
+	return actions[node >>> CHUNK_BITS][node & CHUNK_MASK];
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Forgets all nodes, but keeps the memory for the next search.
+     */
+    public void clear() {
+	size = 0;
+    }
+
+    public static int action(int taskIndex, int status) {
+	if (taskIndex > TASK_MASK) {
+	    throw new IllegalArgumentException(
+		    "Too many tasks for the node pool");
+	}
+	return (taskIndex << STATUS_BITS) | status;
+    }
+
+    public static int taskIndex(int action) {
+	return (action >>> STATUS_BITS) & TASK_MASK;
+    }
+
+    public static int status(int action) {
+	return action & STATUS_MASK;
+    }
+
+    /**
+     * The actions of the nodes from the root to the given node.
+     *
+     * @return the number of actions written to taskIndices and statuses
+     */
+    public int path(int node, int[] taskIndices, int[] statuses) {
+	int length = 0;
+	for (int n = node; parent(n) != NO_PARENT; n = parent(n)) {
+	    ++length;
+	}
+	int k = length;
+	for (int n = node; parent(n) != NO_PARENT; n = parent(n)) {
+	    --k;
+	    taskIndices[k] = taskIndex(action(n));
+	    statuses[k] = status(action(n));
+	}
+	return length;
+    }
+}
@@ -0,0 +1,95 @@
+package template;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of node indices (see NodePool) ordered by a priority,
+ * stored in two primitive arrays.
+ *
+ */
+public class NodeQueue {
+
+    private int[] nodes = new int[1024];
+    private double[] priorities = new double[1024];
+    private int size = 0;
+    // the largest size reached since the queue was created or cleared
+    private int peakSize = 0;
+
+    public void add(int node, double priority) {
+	if (size == nodes.length) {
+	    nodes = Arrays.copyOf(nodes, 2 * size);
+	    priorities = Arrays.copyOf(priorities, 2 * size);
+	}
+	// sift up
+	int j = size++;
+	if (size > peakSize) {
+	    peakSize = size;
+	}
+	while (j > 0) {
+	    int parent = (j - 1) >>> 1;
+	    if (priorities[parent] <= priority) {
+		break;
+	    }
+	    nodes[j] = nodes[parent];
+	    priorities[j] = priorities[parent];
+	    j = parent;
+	}
+	nodes[j] = node;
+	priorities[j] = priority;
+    }
+
+    /**
+     * Removes the node with the smallest priority.
+     */
+    public int poll() {
+	int first = nodes[0];
+	--size;
+	int node = nodes[size];
+	double priority = priorities[size];
+
+	// sift down
+	int j = 0;
+	while (true) {
+	    int child = 2 * j + 1;
+	    if (child >= size) {
+		break;
+	    }
+	    if (child + 1 < size && priorities[child + 1] < priorities[child]) {
+		++child;
+	    }
+	    if (priority <= priorities[child]) {
+		break;
+	    }
+	    nodes[j] = nodes[child];
+	    priorities[j] = priorities[child];
+	    j = child;
+	}
+	nodes[j] = node;
+	priorities[j] = priority;
+	return first;
+    }
+
+    /**
+     * The priority of the node poll() would return.
+     */
+    public double peekPriority() {
+	return priorities[0];
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public int peakSize() {
+	return peakSize;
+    }
+
+    public void clear() {
+	size = 0;
+	peakSize = 0;
+    }
+}
@@ -0,0 +1,305 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * Level-synchronous BFS. Every action brings one task to its next status, so
+ * all the states of a level have performed the same number of actions and
+ * every plan ends at the same level. Each level is expanded as a whole in
+ * parallel on a fork-join pool, the successors are merged by sorting their
+ * packed states, and only the cheapest way to reach each state is kept.
+ * <p>
+ * The frontier is stored in primitive arrays (packed states and costs); for
+ * each level, only the index of the parent state and the task of the action
+ * are kept to rebuild the plan.
+ *
+ */
+public class ParallelBFSSearch {
+
+    // ranges of states smaller than this are expanded sequentially
+    private static final int SEQUENTIAL_THRESHOLD = 1024;
+
+    private interface RangeBody {
+	void process(int from, int to);
+    }
+
+    private static class RangeTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private final RangeBody body;
+	private final int from;
+	private final int to;
+
+	RangeTask(RangeBody body, int from, int to) {
+	    this.body = body;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+	    if (to - from <= SEQUENTIAL_THRESHOLD) {
+		body.process(from, to);
+	    } else {
+		int middle = (from + to) >>> 1;
+		invokeAll(new RangeTask(body, from, middle), new RangeTask(body,
+			middle, to));
+	    }
+	}
+    }
+
+    private final SearchProblem problem;
+    private final int parallelism;
+
+    // for each level, the parent (index in the previous level) of each state
+    // and the task whose status changed
+    private final List<int[]> levelParents = new ArrayList<int[]>();
+    private final List<byte[]> levelTasks = new ArrayList<byte[]>();
+
+    private double cost;
+    private long numberOfStates = 0;
+    private int largestLevel = 0;
+
+    public ParallelBFSSearch(SearchProblem problem, int parallelism) {
+	if (problem.numberOfTasks() > Byte.MAX_VALUE) {
+	    throw new IllegalArgumentException("Too many tasks for the parallel BFS");
+	}
+	this.problem = problem;
+	this.parallelism = parallelism;
+    }
+
+    public Plan createPlan() {
+	ForkJoinPool pool = new ForkJoinPool(parallelism);
+	try {
+	    return search(pool);
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    private Plan search(ForkJoinPool pool) {
+	int[] initialStatus = problem.initialStatus();
+	long[] keys = { problem.key(problem.packStatus(initialStatus),
+		problem.initialCity()) };
+	double[] costs = { 0 };
+
+	int numberOfLevels = problem.numberOfActions();
+	for (int level = 0; level < numberOfLevels; ++level) {
+	    final long[] frontierKeys = keys;
+	    final double[] frontierCosts = costs;
+	    final int frontierSize = keys.length;
+
+	    // 1. count the successors of each state, to know where each state
+	    // writes its successors
+	    final int[] offsets = new int[frontierSize + 1];
+	    pool.invoke(new RangeTask(new RangeBody() {
+
+		@Override
+		public void process(int from, int to) {
+		    for (int i = from; i < to; ++i) {
+			offsets[i + 1] = expand(frontierKeys[i], 0, i, 0,
+				null, null, null, null);
+		    }
+		}
+	    }, 0, frontierSize));
+	    for (int i = 0; i < frontierSize; ++i) {
+		offsets[i + 1] += offsets[i];
+	    }
+
+	    // 2. generate the successors
+	    int numberOfSuccessors = offsets[frontierSize];
+	    final long[] successorKeys = new long[numberOfSuccessors];
+	    final double[] successorCosts = new double[numberOfSuccessors];
+	    final int[] successorParents = new int[numberOfSuccessors];
+	    final byte[] successorTasks = new byte[numberOfSuccessors];
+	    pool.invoke(new RangeTask(new RangeBody() {
+
+		@Override
+		public void process(int from, int to) {
+		    for (int i = from; i < to; ++i) {
+			expand(frontierKeys[i], frontierCosts[i], i,
+				offsets[i], successorKeys, successorCosts,
+				successorParents, successorTasks);
+		    }
+		}
+	    }, 0, frontierSize));
+	    numberOfStates += numberOfSuccessors;
+
+	    if (numberOfSuccessors == 0) {
+		throw new IllegalArgumentException(
+			"No plan can deliver all tasks with capacity "
+				+ problem.capacity());
+	    }
+
+	    // 3. merge duplicates: the next frontier is the sorted set of
+	    // distinct successor states
+	    final long[] nextKeys = distinct(successorKeys);
+	    final int nextSize = nextKeys.length;
+
+	    // 4. keep the cheapest way to reach each state; costs are not negative,
+	    // so their raw bits are ordered like the costs themselves
+	    final AtomicLongArray minimumCosts = new AtomicLongArray(nextSize);
+	    final AtomicLongArray origins = new AtomicLongArray(nextSize);
+	    for (int j = 0; j < nextSize; ++j) {
+		minimumCosts.set(j, Long.MAX_VALUE);
+		origins.set(j, Long.MAX_VALUE);
+	    }
+	    final int[] positions = new int[numberOfSuccessors];
+	    pool.invoke(new RangeTask(new RangeBody() {
+
+		@Override
+		public void process(int from, int to) {
+		    for (int j = from; j < to; ++j) {
+			int position = Arrays.binarySearch(nextKeys,
+				successorKeys[j]);
+			positions[j] = position;
+			updateMinimum(minimumCosts, position,
+				Double.doubleToLongBits(successorCosts[j]));
+		    }
+		}
+	    }, 0, numberOfSuccessors));
+	    // among successors of equal cost, the one with the smallest parent
+	    // (then task) is kept, so that the result is deterministic
+	    pool.invoke(new RangeTask(new RangeBody() {
+
+		@Override
+		public void process(int from, int to) {
+		    for (int j = from; j < to; ++j) {
+			int position = positions[j];
+			if (Double.doubleToLongBits(successorCosts[j]) == minimumCosts
+				.get(position)) {
+			    long origin = ((long) successorParents[j] << Byte.SIZE)
+				    | successorTasks[j];
+			    updateMinimum(origins, position, origin);
+			}
+		    }
+		}
+	    }, 0, numberOfSuccessors));
+
+	    // 5. swap the frontiers
+	    double[] nextCosts = new double[nextSize];
+	    int[] parents = new int[nextSize];
+	    byte[] tasks = new byte[nextSize];
+	    for (int j = 0; j < nextSize; ++j) {
+		nextCosts[j] = Double.longBitsToDouble(minimumCosts.get(j));
+		long origin = origins.get(j);
+		parents[j] = (int) (origin >>> Byte.SIZE);
+		tasks[j] = (byte) (origin & 0xFF);
+	    }
+	    levelParents.add(parents);
+	    levelTasks.add(tasks);
+
+	    keys = nextKeys;
+	    costs = nextCosts;
+	    if (nextSize > largestLevel) {
+		largestLevel = nextSize;
+	    }
+	}
+
+	// all the states of the last level are final states
+	int best = 0;
+	for (int j = 1; j < keys.length; ++j) {
+	    if (costs[j] < costs[best]) {
+		best = j;
+	    }
+	}
+	cost = costs[best];
+
+	return buildPlan(best, numberOfLevels);
+    }
+
+    /**
+     * Generates the successors of a state. If the output arrays are null, the
+     * successors are only counted.
+     *
+     * @return the number of successors
+     */
+    private int expand(long key, double cost, int parent, int offset,
+	    long[] keys, double[] costs, int[] parents, byte[] tasks) {
+	long packedStatus = problem.packedStatus(key);
+	City city = problem.city(key);
+	int charge = problem.charge(packedStatus);
+
+	int numberOfTasks = problem.numberOfTasks();
+	int count = 0;
+
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    int status = (int) (packedStatus >>> (SearchProblem.BITS_PER_TASK * i))
+		    & SearchProblem.STATUS_MASK;
+	    if (status == DeliberativeState.DELIVERED
+		    || (status == DeliberativeState.NOT_PICKED_UP && charge
+			    + problem.task(i).weight > problem.capacity())) {
+		continue;
+	    }
+
+	    if (keys != null) {
+		City destination = problem.destination(i, status);
+		int j = offset + count;
+		keys[j] = problem.key(packedStatus + problem.statusIncrement(i),
+			destination);
+		costs[j] = cost + problem.cost(city, destination);
+		parents[j] = parent;
+		tasks[j] = (byte) i;
+	    }
+	    ++count;
+	}
+	return count;
+    }
+
+    private static void updateMinimum(AtomicLongArray array, int i, long value) {
+	long current = array.get(i);
+	while (value < current && !array.compareAndSet(i, current, value)) {
+	    current = array.get(i);
+	}
+    }
+
+    private static long[] distinct(long[] keys) {
+	long[] sorted = keys.clone();
+	Arrays.parallelSort(sorted);
+
+	int size = 0;
+	for (int j = 0; j < sorted.length; ++j) {
+	    if (size == 0 || sorted[j] != sorted[size - 1]) {
+		sorted[size++] = sorted[j];
+	    }
+	}
+	return Arrays.copyOf(sorted, size);
+    }
+
+    private Plan buildPlan(int index, int numberOfLevels) {
+	int[] taskIndices = new int[numberOfLevels];
+	int[] statuses = new int[numberOfLevels];
+	int[] tasksStatus = problem.initialStatus();
+
+	// walk up the parents to find the task of each action
+	for (int level = numberOfLevels - 1; level >= 0; --level) {
+	    taskIndices[level] = levelTasks.get(level)[index];
+	    index = levelParents.get(level)[index];
+	}
+	// replay the actions to find the status each of them leads to
+	for (int k = 0; k < numberOfLevels; ++k) {
+	    statuses[k] = ++tasksStatus[taskIndices[k]];
+	}
+	return problem.buildPlan(taskIndices, statuses, numberOfLevels);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfStates() {
+	return numberOfStates;
+    }
+
+    public int largestLevel() {
+	return largestLevel;
+    }
+}
@@ -0,0 +1,171 @@
+package template;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import logist.plan.Plan;
+import logist.topology.Topology.City;
+
+/**
+ * The BFS and ASTAR searches of DeliberativeTemplate, with their nodes kept in
+ * a NodePool instead of one DeliberativeState per generated state.
+ * <p>
+ * The BFS explores the whole state graph and keeps the cheapest final state.
+ * Since the nodes are added to the pool in the order in which they are
+ * generated, the pool itself is the FIFO queue of the BFS. The ASTAR search
+ * takes the cheapest node first (ordered by cost only, like the original), so
+ * the first final state it takes is optimal. Both expand a state again only
+ * when it is reached with a smaller cost than before.
+ *
+ */
+public class PooledSearch {
+
+    private final SearchProblem problem;
+    // ASTAR if true, BFS otherwise
+    private final boolean byCost;
+
+    private final NodePool pool = new NodePool();
+    private final NodeQueue open = new NodeQueue();
+
+    private double cost = Double.POSITIVE_INFINITY;
+    private long numberOfGeneratedStates = 0;
+    private long numberOfDuplicateStates = 0;
+    private int numberOfExpandedStates = 0;
+    private int largestOpenSize = 0;
+
+    public PooledSearch(SearchProblem problem, boolean byCost) {
+	this.problem = problem;
+	this.byCost = byCost;
+    }
+
+    public Plan createPlan() {
+	// the smallest cost with which each state has been expanded
+	Map<Long, Double> expanded = new HashMap<Long, Double>();
+
+	int[] tasksStatus = problem.initialStatus();
+	long initialKey = problem.key(problem.packStatus(tasksStatus),
+		problem.initialCity());
+	int initialNode = pool.add(initialKey, 0, NodePool.NO_PARENT, 0);
+	if (byCost) {
+	    open.add(initialNode, 0);
+	}
+
+	int numberOfTasks = problem.numberOfTasks();
+	int goal = NodePool.NO_PARENT;
+	// the next node of the BFS, the nodes after it are its queue
+	int head = 0;
+
+	while (byCost ? !open.isEmpty() : head < pool.size()) {
+	    int node = byCost ? open.poll() : head++;
+	    long nodeKey = pool.key(node);
+	    double g = pool.cost(node);
+
+	    long packedStatus = problem.packedStatus(nodeKey);
+	    problem.unpackStatus(packedStatus, tasksStatus);
+	    int charge = 0;
+	    int remainingTasks = 0;
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		if (tasksStatus[i] == DeliberativeState.PICKED_UP) {
+		    charge += problem.task(i).weight;
+		}
+		if (tasksStatus[i] != DeliberativeState.DELIVERED) {
+		    ++remainingTasks;
+		}
+	    }
+
+	    // a plan where all tasks are delivered has been found
+	    if (remainingTasks == 0) {
+		if (g < cost) {
+		    cost = g;
+		    goal = node;
+		    if (byCost) {
+			break;
+		    }
+		}
+		continue;
+	    }
+
+	    Double expandedCost = expanded.get(nodeKey);
+	    if (expandedCost != null && expandedCost <= g) {
+		++numberOfDuplicateStates;
+		continue;
+	    }
+	    expanded.put(nodeKey, g);
+
+	    City city = problem.city(nodeKey);
+	    for (int i = 0; i < numberOfTasks; ++i) {
+		int status = tasksStatus[i];
+		if (status == DeliberativeState.DELIVERED) {
+		    continue;
+		}
+		if (status == DeliberativeState.NOT_PICKED_UP
+			&& charge + problem.task(i).weight > problem
+				.capacity()) {
+		    continue;
+		}
+
+		City destination = problem.destination(i, status);
+		double updatedCost = g + problem.cost(city, destination);
+		long key = problem.key(
+			packedStatus + problem.statusIncrement(i), destination);
+		int successor = pool.add(key, updatedCost, node,
+			NodePool.action(i, status + 1));
+		if (byCost) {
+		    open.add(successor, updatedCost);
+		}
+		++numberOfGeneratedStates;
+	    }
+
+	    int openSize = byCost ? open.size() : pool.size() - head;
+	    if (openSize > largestOpenSize) {
+		largestOpenSize = openSize;
+	    }
+	}
+	numberOfExpandedStates = expanded.size();
+
+	if (goal == NodePool.NO_PARENT) {
+	    throw new IllegalArgumentException(
+		    "No plan can deliver all tasks with capacity "
+			    + problem.capacity());
+	}
+	int length = problem.numberOfActions();
+	int[] taskIndices = new int[length];
+	int[] statuses = new int[length];
+	pool.path(goal, taskIndices, statuses);
+	return problem.buildPlan(taskIndices, statuses, length);
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    public long numberOfGeneratedStates() {
+	return numberOfGeneratedStates;
+    }
+
+    /**
+     * The number of nodes taken from the queue whose state had already been
+     * expanded with a cost that is not higher.
+     */
+    public long numberOfDuplicateStates() {
+	return numberOfDuplicateStates;
+    }
+
+    /**
+     * The number of distinct states expanded.
+     */
+    public int numberOfExpandedStates() {
+	return numberOfExpandedStates;
+    }
+
+    public int largestOpenSize() {
+	return largestOpenSize;
+    }
+
+    /**
+     * The number of nodes in the pool, which are all kept until the end.
+     */
+    public int numberOfNodes() {
+	return pool.size();
+    }
+}
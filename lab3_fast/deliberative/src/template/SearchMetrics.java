@@ -0,0 +1,205 @@
+package template;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The measures of one planning call: the counters of the search, the time
+ * spent computing the heuristic, the wall time and the bytes allocated by the
+ * planning thread. A counter that the search does not maintain is left to
+ * NOT_MEASURED.
+ * <p>
+ * The measures are appended to a log as one JSON object per line, so that
+ * planning regressions can be tracked across releases.
+ *
+ */
+public class SearchMetrics {
+
+    public static final long NOT_MEASURED = -1;
+
+    private final String algorithm;
+    private final int numberOfTasks;
+
+    private long generatedNodes = NOT_MEASURED;
+    private long expandedNodes = NOT_MEASURED;
+    private long prunedDuplicates = NOT_MEASURED;
+    private long openPeak = NOT_MEASURED;
+    private long closedSize = NOT_MEASURED;
+    private long heuristicTime = NOT_MEASURED;
+    private long wallTime = NOT_MEASURED;
+    private long allocatedBytes = NOT_MEASURED;
+    private double cost = Double.NaN;
+
+    private long startTime;
+    private long startAllocatedBytes;
+
+    public SearchMetrics(String algorithm, int numberOfTasks) {
+	this.algorithm = algorithm;
+	this.numberOfTasks = numberOfTasks;
+    }
+
+    /**
+     * Starts measuring the wall time and the allocations of the current
+     * thread.
+     */
+    public void start() {
+	startAllocatedBytes = threadAllocatedBytes();
+	startTime = System.nanoTime();
+    }
+
+    /**
+     * Stops measuring; must be called by the thread that called start(). The
+     * allocations of the other threads of a parallel search are not counted.
+     */
+    public void stop() {
+	wallTime = System.nanoTime() - startTime;
+	long allocated = threadAllocatedBytes();
+	if (allocated != NOT_MEASURED && startAllocatedBytes != NOT_MEASURED) {
+	    allocatedBytes = allocated - startAllocatedBytes;
+	}
+    }
+
+    private static long threadAllocatedBytes() {
+	ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	// the allocation counters are an extension of the HotSpot JVM
+	if (bean instanceof com.sun.management.ThreadMXBean) {
+	    com.sun.management.ThreadMXBean hotspotBean;
+	    hotspotBean = (com.sun.management.ThreadMXBean) bean;
+	    if (hotspotBean.isThreadAllocatedMemorySupported()
+		    && hotspotBean.isThreadAllocatedMemoryEnabled()) {
+		return hotspotBean.getThreadAllocatedBytes(Thread
+			.currentThread().getId());
+	    }
+	}
+	return NOT_MEASURED;
+    }
+
+    /**
+     * Adds the duration (ns) of one computation of the heuristic.
+     */
+    public void addHeuristicTime(long time) {
+	if (heuristicTime == NOT_MEASURED) {
+	    heuristicTime = 0;
+	}
+	heuristicTime += time;
+    }
+
+    public void setGeneratedNodes(long generatedNodes) {
+	this.generatedNodes = generatedNodes;
+    }
+
+    public void setExpandedNodes(long expandedNodes) {
+	this.expandedNodes = expandedNodes;
+    }
+
+    public void setPrunedDuplicates(long prunedDuplicates) {
+	this.prunedDuplicates = prunedDuplicates;
+    }
+
+    public void setOpenPeak(long openPeak) {
+	this.openPeak = openPeak;
+    }
+
+    public void setClosedSize(long closedSize) {
+	this.closedSize = closedSize;
+    }
+
+    public void setCost(double cost) {
+	this.cost = cost;
+    }
+
+    public String algorithm() {
+	return algorithm;
+    }
+
+    public int numberOfTasks() {
+	return numberOfTasks;
+    }
+
+    public long generatedNodes() {
+	return generatedNodes;
+    }
+
+    public long expandedNodes() {
+	return expandedNodes;
+    }
+
+    public long prunedDuplicates() {
+	return prunedDuplicates;
+    }
+
+    public long openPeak() {
+	return openPeak;
+    }
+
+    public long closedSize() {
+	return closedSize;
+    }
+
+    public long heuristicTime() {
+	return heuristicTime;
+    }
+
+    public long wallTime() {
+	return wallTime;
+    }
+
+    public long allocatedBytes() {
+	return allocatedBytes;
+    }
+
+    public double cost() {
+	return cost;
+    }
+
+    /**
+     * The measures as a JSON object on one line, with null for the measures
+     * that are not available.
+     */
+    public String toJson() {
+	StringBuilder json = new StringBuilder();
+	json.append("{\"algorithm\":\"").append(algorithm).append('"');
+	json.append(",\"tasks\":").append(numberOfTasks);
+	json.append(",\"cost\":").append(Double.isNaN(cost) ? "null" : cost);
+	appendMeasure(json, "generated", generatedNodes);
+	appendMeasure(json, "expanded", expandedNodes);
+	appendMeasure(json, "prunedDuplicates", prunedDuplicates);
+	appendMeasure(json, "openPeak", openPeak);
+	appendMeasure(json, "closedSize", closedSize);
+	appendMeasure(json, "heuristicNanos", heuristicTime);
+	appendMeasure(json, "wallNanos", wallTime);
+	appendMeasure(json, "allocatedBytes", allocatedBytes);
+	return json.append('}').toString();
+    }
+
+    private static void appendMeasure(StringBuilder json, String name,
+	    long value) {
+	json.append(",\"").append(name).append("\":");
+	if (value == NOT_MEASURED) {
+	    json.append("null");
+	} else {
+	    json.append(value);
+	}
+    }
+
+    /**
+     * Appends the measures to the log file.
+     */
+    public void log(String fileName) throws IOException {
+	Writer writer = new FileWriter(fileName, true);
+	try {
+	    writer.write(toJson());
+	    writer.write(System.lineSeparator());
+	} finally {
+	    writer.close();
+	}
+    }
+
+    @Override
+    public String toString() {
+	return toJson();
+    }
+}
@@ -0,0 +1,277 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.plan.Plan;
+import logist.simulation.Vehicle;
+import logist.task.Task;
+import logist.task.TaskSet;
+import logist.topology.Topology;
+import logist.topology.Topology.City;
+
+/**
+ * A compact view of the pickup and delivery problem of one vehicle: the tasks
+ * are indexed, and the status of all tasks together with the current city can
+ * be packed into a single long, so that the search algorithms do not need to
+ * keep a DeliberativeState object per visited state.
+ *
+ */
+public class SearchProblem {
+
+    // each task status (NOT_PICKED_UP, PICKED_UP, DELIVERED) is stored on 2
+    // bits, the current city is stored above the task statuses
+    public static final int BITS_PER_TASK = 2;
+    public static final int STATUS_MASK = (1 << BITS_PER_TASK) - 1;
+    public static final int MAX_KEY_BITS = 63;
+
+    private final Task[] tasks;
+    private final int[] initialStatus;
+    private final City initialCity;
+    private final int initialCharge;
+    private final int capacity;
+    private final double costPerKm;
+    private final List<City> cities;
+    private final int cityShift;
+    // when set, the time spent computing the heuristic is added to it
+    private SearchMetrics metrics;
+
+    public SearchProblem(Vehicle vehicle, TaskSet tasks, TaskSet carriedTasks,
+	    Topology topology) {
+
+	List<Task> tasksList = new ArrayList<Task>(tasks);
+	// the previous plan may have been cancelled: the vehicle still has to
+	// deliver the tasks it is carrying
+	if (carriedTasks != null) {
+	    for (Task task : carriedTasks) {
+		if (!tasksList.contains(task)) {
+		    tasksList.add(task);
+		}
+	    }
+	}
+
+	this.tasks = tasksList.toArray(new Task[tasksList.size()]);
+	this.initialStatus = new int[this.tasks.length];
+	this.initialCity = vehicle.getCurrentCity();
+	this.capacity = vehicle.capacity();
+	this.costPerKm = vehicle.costPerKm();
+
+	int charge = 0;
+	for (int i = 0; i < this.tasks.length; ++i) {
+	    if (carriedTasks != null && carriedTasks.contains(this.tasks[i])) {
+		initialStatus[i] = DeliberativeState.PICKED_UP;
+		charge += this.tasks[i].weight;
+	    } else {
+		initialStatus[i] = DeliberativeState.NOT_PICKED_UP;
+	    }
+	}
+	this.initialCharge = charge;
+
+	this.cities = topology.cities();
+	this.cityShift = BITS_PER_TASK * this.tasks.length;
+	int cityBits = 32 - Integer.numberOfLeadingZeros(Math.max(
+		cities.size() - 1, 1));
+	if (cityShift + cityBits > MAX_KEY_BITS) {
+	    throw new IllegalArgumentException("Too many tasks ("
+		    + this.tasks.length + ") to pack a state into a long");
+	}
+    }
+
+    public int numberOfTasks() {
+	return tasks.length;
+    }
+
+    public Task task(int i) {
+	return tasks[i];
+    }
+
+    public int[] initialStatus() {
+	return initialStatus.clone();
+    }
+
+    public City initialCity() {
+	return initialCity;
+    }
+
+    public int initialCharge() {
+	return initialCharge;
+    }
+
+    public int capacity() {
+	return capacity;
+    }
+
+    public double costPerKm() {
+	return costPerKm;
+    }
+
+    /**
+     * Times every computation of the heuristic into the given metrics (or
+     * stops timing it if null). The metrics are not synchronized: only a
+     * single-threaded search may be timed.
+     */
+    public void setMetrics(SearchMetrics metrics) {
+	this.metrics = metrics;
+    }
+
+    /**
+     * The city the vehicle moves to in order to bring task i from the given
+     * status to the next one.
+     */
+    public City destination(int i, int status) {
+	return status == DeliberativeState.NOT_PICKED_UP ? tasks[i].pickupCity
+		: tasks[i].deliveryCity;
+    }
+
+    public double cost(City from, City to) {
+	return from.distanceTo(to) * costPerKm;
+    }
+
+    /**
+     * Admissible (and consistent) estimate of the remaining cost: every task
+     * that is not delivered yet still needs at least the shortest trip from
+     * the current city through its pickup city (if not picked up) to its
+     * delivery city.
+     */
+    public double heuristic(int[] tasksStatus, City city) {
+	if (metrics == null) {
+	    return computeHeuristic(tasksStatus, city);
+	}
+	long start = System.nanoTime();
+	double h = computeHeuristic(tasksStatus, city);
+	metrics.addHeuristicTime(System.nanoTime() - start);
+	return h;
+    }
+
+    private double computeHeuristic(int[] tasksStatus, City city) {
+	double h = 0;
+	for (int i = 0; i < tasks.length; ++i) {
+	    double remaining;
+	    if (tasksStatus[i] == DeliberativeState.NOT_PICKED_UP) {
+		remaining = city.distanceTo(tasks[i].pickupCity)
+			+ tasks[i].pickupCity.distanceTo(tasks[i].deliveryCity);
+	    } else if (tasksStatus[i] == DeliberativeState.PICKED_UP) {
+		remaining = city.distanceTo(tasks[i].deliveryCity);
+	    } else {
+		continue;
+	    }
+	    if (remaining > h) {
+		h = remaining;
+	    }
+	}
+	return h * costPerKm;
+    }
+
+    /**
+     * The task statuses packed on BITS_PER_TASK bits each. Since a status only
+     * ever goes from one value to the next, changing task i from one status
+     * to the next amounts to adding statusIncrement(i).
+     */
+    public long packStatus(int[] tasksStatus) {
+	long packed = 0;
+	for (int i = 0; i < tasks.length; ++i) {
+	    packed |= (long) tasksStatus[i] << (BITS_PER_TASK * i);
+	}
+	return packed;
+    }
+
+    public void unpackStatus(long packedStatus, int[] tasksStatus) {
+	for (int i = 0; i < tasks.length; ++i) {
+	    tasksStatus[i] = (int) (packedStatus >>> (BITS_PER_TASK * i))
+		    & STATUS_MASK;
+	}
+    }
+
+    /**
+     * The load of the vehicle once the tasks have the given statuses.
+     */
+    public int charge(long packedStatus) {
+	int charge = 0;
+	for (int i = 0; i < tasks.length; ++i) {
+	    if (((packedStatus >>> (BITS_PER_TASK * i)) & STATUS_MASK) == DeliberativeState.PICKED_UP) {
+		charge += tasks[i].weight;
+	    }
+	}
+	return charge;
+    }
+
+    public long statusIncrement(int i) {
+	return 1L << (BITS_PER_TASK * i);
+    }
+
+    public long key(long packedStatus, City city) {
+	return packedStatus | ((long) city.id << cityShift);
+    }
+
+    public long packedStatus(long key) {
+	return key & ((1L << cityShift) - 1);
+    }
+
+    public City city(long key) {
+	return cities.get((int) (key >>> cityShift));
+    }
+
+    /**
+     * The number of actions still needed to deliver all tasks from the initial
+     * state: every plan has exactly that many actions.
+     */
+    public int numberOfActions() {
+	int numberOfActions = 0;
+	for (int status : initialStatus) {
+	    numberOfActions += DeliberativeState.DELIVERED - status;
+	}
+	return numberOfActions;
+    }
+
+    /**
+     * A feasible plan that does not need any search: deliver the tasks already
+     * carried, then pick up and deliver the other tasks one after the other.
+     */
+    public Plan sequentialPlan() {
+	int length = 0;
+	int[] taskIndices = new int[2 * tasks.length];
+	int[] statuses = new int[2 * tasks.length];
+
+	for (int i = 0; i < tasks.length; ++i) {
+	    if (initialStatus[i] == DeliberativeState.PICKED_UP) {
+		taskIndices[length] = i;
+		statuses[length++] = DeliberativeState.DELIVERED;
+	    }
+	}
+	for (int i = 0; i < tasks.length; ++i) {
+	    if (initialStatus[i] == DeliberativeState.NOT_PICKED_UP) {
+		taskIndices[length] = i;
+		statuses[length++] = DeliberativeState.PICKED_UP;
+		taskIndices[length] = i;
+		statuses[length++] = DeliberativeState.DELIVERED;
+	    }
+	}
+	return buildPlan(taskIndices, statuses, length);
+    }
+
+    /**
+     * Builds the plan from the sequence of actions found by a search: the
+     * action k brings task taskIndices[k] to the status statuses[k].
+     */
+    public Plan buildPlan(int[] taskIndices, int[] statuses, int length) {
+	City currentCity = initialCity;
+	Plan plan = new Plan(currentCity);
+
+	for (int k = 0; k < length; ++k) {
+	    Task task = tasks[taskIndices[k]];
+	    City nextCity = statuses[k] == DeliberativeState.PICKED_UP ? task.pickupCity
+		    : task.deliveryCity;
+
+	    for (City city : currentCity.pathTo(nextCity))
+		plan.appendMove(city);
+
+	    if (statuses[k] == DeliberativeState.PICKED_UP) {
+		plan.appendPickup(task);
+	    } else {
+		plan.appendDelivery(task);
+	    }
+	    currentCity = nextCity;
+	}
+	return plan;
+    }
+}
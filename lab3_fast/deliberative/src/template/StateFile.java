@@ -0,0 +1,197 @@
+package template;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of fixed-size search state records (packed state, cost, origin).
+ * Records are appended through a buffer of one block, and read back in order
+ * by readers which each buffer one block, so that only a few blocks and not
+ * the whole file need to be in memory. The file only grows by the records
+ * written.
+ *
+ */
+public class StateFile {
+
+    public static final int RECORD_SIZE = 8 + 8 + 8;
+    // records written or read at once (48KB)
+    private static final int BLOCK_RECORDS = 1 << 11;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    private final ByteBuffer writeBuffer = ByteBuffer
+	    .allocate(BLOCK_RECORDS * RECORD_SIZE);
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private long size = 0;
+    // number of records already in the file, the others are in writeBuffer
+    private long written = 0;
+
+    public StateFile(File file) throws IOException {
+	this.file = file;
+	this.randomAccessFile = new RandomAccessFile(file, "rw");
+	this.channel = randomAccessFile.getChannel();
+    }
+
+    public void append(long key, double cost, long origin) throws IOException {
+	if (!writeBuffer.hasRemaining()) {
+	    flush();
+	}
+	writeBuffer.putLong(key);
+	writeBuffer.putDouble(cost);
+	writeBuffer.putLong(origin);
+	++size;
+    }
+
+    public long size() {
+	return size;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     */
+    private void flush() throws IOException {
+	writeBuffer.flip();
+	long position = written * RECORD_SIZE;
+	while (writeBuffer.hasRemaining()) {
+	    position += channel.write(writeBuffer, position);
+	}
+	writeBuffer.clear();
+	written = size;
+    }
+
+    /**
+     * Reads the record index alone, for the few records which are not read
+     * in order.
+     */
+    public long origin(long index) throws IOException {
+	if (index >= written) {
+	    flush();
+	}
+	recordBuffer.clear();
+	read(recordBuffer, index);
+	return recordBuffer.getLong(16);
+    }
+
+    /**
+     * @return a reader of the records from index from to index to (excluded)
+     */
+    public Reader reader(long from, long to) throws IOException {
+	return reader(from, to, BLOCK_RECORDS);
+    }
+
+    /**
+     * @param bufferRecords
+     *            the number of records the reader buffers, at least one and at
+     *            most one block
+     * @return a reader of the records from index from to index to (excluded)
+     */
+    public Reader reader(long from, long to, int bufferRecords)
+	    throws IOException {
+	if (to > written) {
+	    flush();
+	}
+	return new Reader(from, to, bufferRecords);
+    }
+
+    /**
+     * @return a reader of all the records
+     */
+    public Reader reader() throws IOException {
+	return reader(0, size);
+    }
+
+    // fills the buffer from the record index on
+    private void read(ByteBuffer buffer, long index) throws IOException {
+	long position = index * RECORD_SIZE;
+	while (buffer.hasRemaining()) {
+	    int count = channel.read(buffer, position);
+	    if (count < 0) {
+		throw new IOException("Unexpected end of " + file);
+	    }
+	    position += count;
+	}
+	buffer.flip();
+    }
+
+    /**
+     * Reads a range of records in order, one record at a time.
+     */
+    public class Reader {
+
+	private final ByteBuffer buffer;
+	private final long end;
+	private long index;
+
+	private Reader(long from, long to, int bufferRecords)
+		throws IOException {
+	    // short runs only need a short buffer
+	    int records = (int) Math.min(Math.min(BLOCK_RECORDS, bufferRecords),
+		    to - from);
+	    buffer = ByteBuffer.allocate(Math.max(1, records) * RECORD_SIZE);
+	    this.index = from;
+	    this.end = to;
+	    fill();
+	}
+
+	/**
+	 * @return whether there is a current record
+	 */
+	public boolean hasRecord() {
+	    return index < end;
+	}
+
+	/**
+	 * @return the index in the file of the current record
+	 */
+	public long index() {
+	    return index;
+	}
+
+	public long key() {
+	    return buffer.getLong(buffer.position());
+	}
+
+	public double cost() {
+	    return buffer.getDouble(buffer.position() + 8);
+	}
+
+	public long origin() {
+	    return buffer.getLong(buffer.position() + 16);
+	}
+
+	/**
+	 * Moves to the next record.
+	 */
+	public void next() throws IOException {
+	    ++index;
+	    buffer.position(buffer.position() + RECORD_SIZE);
+	    if (!buffer.hasRemaining()) {
+		fill();
+	    }
+	}
+
+	private void fill() throws IOException {
+	    buffer.clear();
+	    buffer.limit((int) Math.min(buffer.capacity(), (end - index)
+		    * RECORD_SIZE));
+	    read(buffer, index);
+	}
+    }
+
+    public void delete() {
+	try {
+	    channel.close();
+	    randomAccessFile.close();
+	} catch (IOException e) {
+	    // nothing more can be done with this file
+	}
+	if (!file.delete()) {
+	    file.deleteOnExit();
+	}
+    }
+}
@@ -0,0 +1,124 @@
+package template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import logist.task.Task;
+import logist.topology.Topology.City;
+
+/**
+ * The tasks of a problem grouped into classes of identical tasks: same pickup
+ * city, same delivery city and same weight. The tasks of a class are
+ * interchangeable, so a search only needs to count how many tasks of each
+ * class are picked up and delivered, instead of tracking the status of every
+ * task; the actions on classes are mapped back to concrete tasks when the
+ * plan is built.
+ *
+ */
+public class TaskClasses {
+
+    private final SearchProblem problem;
+    // the indices of the tasks of each class
+    private final int[][] members;
+    private final int[] initialPickedUp;
+
+    public TaskClasses(SearchProblem problem) {
+	this.problem = problem;
+
+	List<List<Integer>> classes = new ArrayList<List<Integer>>();
+	int numberOfTasks = problem.numberOfTasks();
+	for (int i = 0; i < numberOfTasks; ++i) {
+	    List<Integer> taskClass = null;
+	    for (List<Integer> candidate : classes) {
+		if (identical(problem.task(candidate.get(0)), problem.task(i))) {
+		    taskClass = candidate;
+		    break;
+		}
+	    }
+	    if (taskClass == null) {
+		taskClass = new ArrayList<Integer>();
+		classes.add(taskClass);
+	    }
+	    taskClass.add(i);
+	}
+
+	int[] initialStatus = problem.initialStatus();
+	this.members = new int[classes.size()][];
+	this.initialPickedUp = new int[classes.size()];
+	for (int c = 0; c < members.length; ++c) {
+	    List<Integer> taskClass = classes.get(c);
+	    members[c] = new int[taskClass.size()];
+	    for (int k = 0; k < members[c].length; ++k) {
+		members[c][k] = taskClass.get(k);
+		if (initialStatus[members[c][k]] == DeliberativeState.PICKED_UP) {
+		    ++initialPickedUp[c];
+		}
+	    }
+	}
+    }
+
+    private static boolean identical(Task task1, Task task2) {
+	return task1.pickupCity == task2.pickupCity
+		&& task1.deliveryCity == task2.deliveryCity
+		&& task1.weight == task2.weight;
+    }
+
+    public int numberOfClasses() {
+	return members.length;
+    }
+
+    public int size(int c) {
+	return members[c].length;
+    }
+
+    /**
+     * The number of tasks of the class the vehicle carries initially.
+     */
+    public int initialPickedUp(int c) {
+	return initialPickedUp[c];
+    }
+
+    public int weight(int c) {
+	return problem.task(members[c][0]).weight;
+    }
+
+    public City pickupCity(int c) {
+	return problem.task(members[c][0]).pickupCity;
+    }
+
+    public City deliveryCity(int c) {
+	return problem.task(members[c][0]).deliveryCity;
+    }
+
+    /**
+     * Maps a sequence of actions on classes to actions on tasks: a pickup
+     * takes a task of the class that is not picked up yet, a delivery a task
+     * of the class that is carried.
+     *
+     * @param classIndices
+     *            the class of each action
+     * @param statuses
+     *            the status each action brings a task of its class to
+     * @param taskIndices
+     *            receives the task of each action
+     */
+    public void assignTasks(int[] classIndices, int[] statuses, int length,
+	    int[] taskIndices) {
+	int[] tasksStatus = problem.initialStatus();
+	for (int k = 0; k < length; ++k) {
+	    int task = -1;
+	    for (int i : members[classIndices[k]]) {
+		if (tasksStatus[i] == statuses[k] - 1) {
+		    task = i;
+		    break;
+		}
+	    }
+	    if (task < 0) {
+		throw new IllegalArgumentException("No task of class "
+			+ classIndices[k] + " can reach status " + statuses[k]);
+	    }
+	    tasksStatus[task] = statuses[k];
+	    taskIndices[k] = task;
+	}
+    }
+}
@@ -0,0 +1,86 @@
+package template;
+
+/**
+ * Keeps the k nodes with the smallest priorities among the nodes offered to
+ * it, in a bounded binary max-heap: offering a node costs O(log k), and no
+ * more than k nodes are ever stored. Among nodes of equal priority, the one
+ * with the smallest index is kept, so that the selection is deterministic.
+ *
+ */
+public class TopKSelector {
+
+    private final int[] nodes;
+    private final double[] priorities;
+    private int size = 0;
+
+    public TopKSelector(int k) {
+	if (k <= 0) {
+	    throw new IllegalArgumentException("k must be positive: " + k);
+	}
+	this.nodes = new int[k];
+	this.priorities = new double[k];
+    }
+
+    public void offer(int node, double priority) {
+	if (size < nodes.length) {
+	    // sift up
+	    int j = size++;
+	    while (j > 0) {
+		int parent = (j - 1) >>> 1;
+		if (!after(node, priority, nodes[parent], priorities[parent])) {
+		    break;
+		}
+		nodes[j] = nodes[parent];
+		priorities[j] = priorities[parent];
+		j = parent;
+	    }
+	    nodes[j] = node;
+	    priorities[j] = priority;
+	} else if (after(nodes[0], priorities[0], node, priority)) {
+	    // replace the worst node kept, and sift down
+	    int j = 0;
+	    while (true) {
+		int child = 2 * j + 1;
+		if (child >= size) {
+		    break;
+		}
+		if (child + 1 < size
+			&& after(nodes[child + 1], priorities[child + 1],
+				nodes[child], priorities[child])) {
+		    ++child;
+		}
+		if (!after(nodes[child], priorities[child], node, priority)) {
+		    break;
+		}
+		nodes[j] = nodes[child];
+		priorities[j] = priorities[child];
+		j = child;
+	    }
+	    nodes[j] = node;
+	    priorities[j] = priority;
+	}
+    }
+
+    // whether node1 comes after node2 in the order of selection
+    private static boolean after(int node1, double priority1, int node2,
+	    double priority2) {
+	return priority1 > priority2 || (priority1 == priority2 && node1 > node2);
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /**
+     * The nodes kept, in no particular order.
+     */
+    public int[] nodes() {
+	int[] selected = new int[size];
+	System.arraycopy(nodes, 0, selected, 0, size);
+	return selected;
+    }
+
+    public void clear() {
+	size = 0;
+    }
+}
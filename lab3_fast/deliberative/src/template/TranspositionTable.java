@@ -0,0 +1,102 @@
+package template;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size open addressing hash table from packed states to the smallest
+ * cost with which they have been reached. The table never grows: once it
+ * holds maximumSize entries, new states are simply not remembered anymore,
+ * which keeps the memory used by the search bounded.
+ *
+ */
+public class TranspositionTable {
+
+    private static final long EMPTY = -1L;
+    private static final int MAXIMUM_BUDGET = 1 << 28;
+    // bytes of the slots of an entry: a key and a cost, and up to 4 slots per
+    // entry
+    private static final int ENTRY_SIZE = 4 * (8 + 8);
+    // share of the heap still available that the table may take
+    private static final double MEMORY_SHARE = 0.5;
+
+    private final long[] keys;
+    private final double[] costs;
+    private final int mask;
+    private final int maximumSize;
+
+    private int size;
+
+    public TranspositionTable(int maximumSize) {
+	if (maximumSize <= 0 || maximumSize > MAXIMUM_BUDGET) {
+	    throw new IllegalArgumentException("The node budget must be between 1 and "
+		    + MAXIMUM_BUDGET);
+	}
+	// keep the load factor below 1/2 so that probing sequences stay short
+	int slots = Integer.highestOneBit(maximumSize) << 2;
+	this.keys = new long[slots];
+	this.costs = new double[slots];
+	this.mask = slots - 1;
+	this.maximumSize = maximumSize;
+	clear();
+    }
+
+    /**
+     * @return the largest node budget whose table fits in a share of the heap
+     *         which is free or may still be allocated, at least 1
+     */
+    public static int availableEntries() {
+	Runtime runtime = Runtime.getRuntime();
+	long available = runtime.maxMemory()
+		- (runtime.totalMemory() - runtime.freeMemory());
+	return (int) Math.max(1, Math.min(MAXIMUM_BUDGET,
+		(long) (MEMORY_SHARE * available) / ENTRY_SIZE));
+    }
+
+    public void clear() {
+	Arrays.fill(keys, EMPTY);
+	size = 0;
+    }
+
+    /**
+     * Records that the state key has been reached with the given cost.
+     *
+     * @return false if the state had already been reached with a cost that is
+     *         not higher, true otherwise
+     */
+    public boolean offer(long key, double cost) {
+	int slot = slot(key);
+	while (keys[slot] != EMPTY) {
+	    if (keys[slot] == key) {
+		if (costs[slot] <= cost) {
+		    return false;
+		}
+		costs[slot] = cost;
+		return true;
+	    }
+	    slot = (slot + 1) & mask;
+	}
+
+	// the node budget is exhausted: the state is expanded, but not
+	// remembered
+	if (size < maximumSize) {
+	    keys[slot] = key;
+	    costs[slot] = cost;
+	    ++size;
+	}
+	return true;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public int maximumSize() {
+	return maximumSize;
+    }
+
+    private int slot(long key) {
+	// mix the bits, since packed states mostly differ in their low bits
+	long h = key * 0x9E3779B97F4A7C15L;
+	return (int) (h >>> 32) & mask;
+    }
+}
@@ -30,6 +30,14 @@ public class CentralizedTemplate implements CentralizedBehavior {
     private long timeout_setup;
     private long timeout_plan;
 
+    // number of stochastic local searches run in parallel
+    private int numberOfStarts;
+    // number of threads evaluating the neighbours of long routes
+    private int parallelism;
+    // rule choosing the next plan among the neighbours
+    private StochasticLocalSearch.Metaheuristic metaheuristic;
+    private long seed;
+
     @Override
     public void setup(Topology topology, TaskDistribution distribution,
 	    Agent agent) {
@@ -51,7 +59,14 @@ public class CentralizedTemplate implements CentralizedBehavior {
 	this.topology = topology;
 	this.distribution = distribution;
 	this.agent = agent;
-	
+
+	numberOfStarts = agent.readProperty("starts", Integer.class, 1);
+	parallelism = agent.readProperty("parallelism", Integer.class, 1);
+	// Throws IllegalArgumentException if the metaheuristic is unknown
+	metaheuristic = StochasticLocalSearch.Metaheuristic.valueOf(agent
+		.readProperty("metaheuristic", String.class, "STOCHASTIC")
+		.toUpperCase());
+	seed = agent.readProperty("seed", Long.class, 12345L);
     }
 
     @Override
@@ -64,11 +79,27 @@ public class CentralizedTemplate implements CentralizedBehavior {
 	List<Plan> plans = new ArrayList<Plan>();
 	// plans.add(planVehicle1);
 
+	TimeBudget budget = new TimeBudget(timeout_plan);
 	StochasticLocalSearch stochasticLocalSearch = new StochasticLocalSearch(
-		vehicles, tasks, timeout_plan);
+		vehicles, tasks, timeout_plan, numberOfStarts, parallelism,
+		metaheuristic, seed);
+
+	// the plans of the initial solution are built once, to know how long
+	// building the plans of the final solution will take, and the search
+	// starts from it
+	CentralizedPlan initialPlan = stochasticLocalSearch.initialSolution();
+	if (initialPlan != null) {
+	    long start = System.nanoTime();
+	    for (Vehicle vehicle : vehicles) {
+		buildPlan(initialPlan, vehicle);
+	    }
+	    budget.setMaterializationEstimate(System.nanoTime() - start);
+	}
 
-	CentralizedPlan centralizedPlan = stochasticLocalSearch.createPlan();
+	CentralizedPlan centralizedPlan = stochasticLocalSearch.createPlan(
+		initialPlan, budget);
 
+	budget.startMaterialization();
 	for (Vehicle vehicle : vehicles) {
 	    Plan plan = buildPlan(centralizedPlan, vehicle);
 	    System.out.println(plan);
@@ -77,6 +108,7 @@ public class CentralizedTemplate implements CentralizedBehavior {
 	while (plans.size() < vehicles.size()) {
 	    plans.add(Plan.EMPTY);
 	}
+	budget.endMaterialization();
 
 	long time_end = System.currentTimeMillis();
 	long duration = time_end - time_start;
@@ -84,6 +116,7 @@ public class CentralizedTemplate implements CentralizedBehavior {
 		+ " milliseconds.");
 	System.out.println("Stochastic Local Search stopped: "
 		+ stochasticLocalSearch.stochasticLocalSearchStopCause());
+	System.out.println("Time budget: " + budget);
 	System.out.println("Plan cost: " + centralizedPlan.cost());
 
 	return plans;
@@ -119,19 +152,19 @@ public class CentralizedTemplate implements CentralizedBehavior {
 	City currentCity = vehicle.getCurrentCity();
 	Plan plan = new Plan(currentCity);
 
-	TaskAction taskAction = centralizedPlan.vehicleToFirstTaskAction().get(
-		vehicle);
+	int taskAction = centralizedPlan.firstTaskAction(centralizedPlan
+		.vehicleIndex(vehicle));
 
-	while (taskAction != null) {
-	    Task task = taskAction.task();
+	while (taskAction != CentralizedPlan.NONE) {
+	    Task task = centralizedPlan.task(taskAction);
 
-	    if (taskAction.status() == TaskAction.PICK_UP) {
+	    if (CentralizedPlan.status(taskAction) == CentralizedPlan.PICK_UP) {
 		for (City city : currentCity.pathTo(task.pickupCity)) {
 		    plan.appendMove(city);
 		}
 		plan.appendPickup(task);
 		currentCity = task.pickupCity;
-	    } else if (taskAction.status() == TaskAction.DELIVERY) {
+	    } else if (CentralizedPlan.status(taskAction) == CentralizedPlan.DELIVERY) {
 		for (City city : currentCity.pathTo(task.deliveryCity)) {
 		    plan.appendMove(city);
 		}
@@ -139,8 +172,7 @@ public class CentralizedTemplate implements CentralizedBehavior {
 		currentCity = task.deliveryCity;
 	    }
 
-	    taskAction = centralizedPlan.taskActionToTaskAction().get(
-		    taskAction);
+	    taskAction = centralizedPlan.nextTaskAction(taskAction);
 	}
 	return plan;
     }
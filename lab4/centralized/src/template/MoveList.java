@@ -0,0 +1,188 @@
+package template;
+
+import java.util.Random;
+
+/**
+ * The neighbours of a plan in the stochastic local search, as descriptors of
+ * the moves leading to them: the type of the move, the vehicles and the
+ * indices in the route it applies to, and the change of cost it brings. A
+ * neighbour plan is only built for the move that is chosen, by applying it to
+ * the current plan.
+ *
+ * The descriptors are stored in arrays that grow as needed and are reused
+ * from one step to the next, so that listing the neighbours does not
+ * allocate.
+ *
+ */
+class MoveList {
+
+	// no move: the plan is kept as it is
+	static final int NONE = -1;
+
+	// give the first task of vehicle_1 to vehicle_2; index_1 is 0 and index_2
+	// the index of the delivery of this task in the route of vehicle_1
+	static final int CHANGE_FIRST_TASK_BETWEEN_VEHICLES = 0;
+	// exchange the task actions at index_1 and index_2 in the route of
+	// vehicle_1 (vehicle_2 is vehicle_1)
+	static final int CHANGE_TASK_ORDER = 1;
+	// move the task whose pickup is at index_1 in the route of vehicle_1 to
+	// vehicle_2, which may be vehicle_1: its pickup is inserted before index_2
+	// and its delivery before index_3 (index_2 <= index_3) of the route of
+	// vehicle_2 without the task
+	static final int RELOCATE = 2;
+	// reverse the task actions from index_1 to index_2 in the route of
+	// vehicle_1 (2-opt)
+	static final int TWO_OPT = 3;
+	// move the task actions from index_1 to index_2 in the route of vehicle_1
+	// before index_3 if index_3 < index_1, else after index_3 (or-opt)
+	static final int OR_OPT = 4;
+	// exchange the task whose pickup is at index_1 in the route of vehicle_1
+	// with the task whose pickup is at index_2 in the route of vehicle_2, each
+	// task taking the places of the pickup and delivery of the other
+	static final int CROSS_EXCHANGE = 5;
+
+	private int size;
+	private int[] type;
+	private int[] vehicle_1;
+	private int[] vehicle_2;
+	private int[] index_1;
+	private int[] index_2;
+	private int[] index_3;
+	private double[] delta;
+
+	MoveList() {
+		allocate(16);
+	}
+
+	private void allocate(int capacity) {
+		type = copyOf(type, capacity);
+		vehicle_1 = copyOf(vehicle_1, capacity);
+		vehicle_2 = copyOf(vehicle_2, capacity);
+		index_1 = copyOf(index_1, capacity);
+		index_2 = copyOf(index_2, capacity);
+		index_3 = copyOf(index_3, capacity);
+		double[] newDelta = new double[capacity];
+		if (delta != null) {
+			System.arraycopy(delta, 0, newDelta, 0, size);
+		}
+		delta = newDelta;
+	}
+
+	private int[] copyOf(int[] array, int capacity) {
+		int[] copy = new int[capacity];
+		if (array != null) {
+			System.arraycopy(array, 0, copy, 0, size);
+		}
+		return copy;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	void add(int type, int vehicle_1, int vehicle_2, int index_1,
+			int index_2, double delta) {
+		add(type, vehicle_1, vehicle_2, index_1, index_2, 0, delta);
+	}
+
+	void add(int type, int vehicle_1, int vehicle_2, int index_1,
+			int index_2, int index_3, double delta) {
+		if (size == this.type.length) {
+			allocate(2 * size);
+		}
+		set(size++, type, vehicle_1, vehicle_2, index_1, index_2, index_3,
+				delta);
+	}
+
+	/**
+	 * Sets the number of moves, the moves added being written by set(). The
+	 * moves are then written in any order, possibly by several threads.
+	 */
+	void resize(int size) {
+		if (size > type.length) {
+			allocate(Math.max(size, 2 * type.length));
+		}
+		this.size = size;
+	}
+
+	void set(int move, int type, int vehicle_1, int vehicle_2, int index_1,
+			int index_2, double delta) {
+		set(move, type, vehicle_1, vehicle_2, index_1, index_2, 0, delta);
+	}
+
+	void set(int move, int type, int vehicle_1, int vehicle_2, int index_1,
+			int index_2, int index_3, double delta) {
+		this.type[move] = type;
+		this.vehicle_1[move] = vehicle_1;
+		this.vehicle_2[move] = vehicle_2;
+		this.index_1[move] = index_1;
+		this.index_2[move] = index_2;
+		this.index_3[move] = index_3;
+		this.delta[move] = delta;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int type(int move) {
+		return type[move];
+	}
+
+	int vehicle_1(int move) {
+		return vehicle_1[move];
+	}
+
+	int vehicle_2(int move) {
+		return vehicle_2[move];
+	}
+
+	int index_1(int move) {
+		return index_1[move];
+	}
+
+	int index_2(int move) {
+		return index_2[move];
+	}
+
+	int index_3(int move) {
+		return index_3[move];
+	}
+
+	/**
+	 * @return the change of cost of the plan brought by the move
+	 */
+	double delta(int move) {
+		return delta[move];
+	}
+
+	/**
+	 * Returns the move with the smallest change of cost, chosen at random
+	 * among the moves with this change of cost if there are several.
+	 * 
+	 * @return the index of the move, or NONE if there is no move
+	 */
+	int minimumCostMove(Random random) {
+
+		// all the neighbouring plans may have a cost worse than the current
+		// plan
+		double minimumCost = Double.MAX_VALUE;
+		int minimumCostMove = NONE;
+		int numberOfMinimumCostMoves = 0;
+
+		for (int move = 0; move < size; ++move) {
+			if (delta[move] < minimumCost) {
+				minimumCost = delta[move];
+				minimumCostMove = move;
+				numberOfMinimumCostMoves = 1;
+			} else if (delta[move] == minimumCost) {
+				// keep each of the moves with the same probability
+				++numberOfMinimumCostMoves;
+				if (random.nextInt(numberOfMinimumCostMoves) == 0) {
+					minimumCostMove = move;
+				}
+			}
+		}
+		return minimumCostMove;
+	}
+}
@@ -0,0 +1,40 @@
+package template;
+
+/**
+ * The rule of the stochastic local search choosing, at each step, which of the
+ * neighbours of the current plan becomes the next plan. The neighbours are
+ * given as the moves leading to them, with their change of cost; the chosen
+ * move is then applied to the plan by the search.
+ *
+ * A rule is created for every search, so that it may keep a state from one
+ * step to the next.
+ *
+ */
+interface MoveSelection {
+
+	/**
+	 * Called once before the first step, with the initial plan and the time
+	 * budget of the search.
+	 */
+	void start(CentralizedPlan plan, TimeBudget budget);
+
+	/**
+	 * @param plan
+	 *            the current plan
+	 * @param routes
+	 *            the profiles of the routes of the vehicles, from which the
+	 *            moves were listed
+	 * @param moves
+	 *            the moves to the neighbours of the plan
+	 * @param bestCost
+	 *            the cost of the best plan found so far by the search
+	 * @return the index of the chosen move, or MoveList.NONE to keep the plan
+	 */
+	int choose(CentralizedPlan plan, RouteProfile[] routes,
+			MoveList moves, double bestCost);
+
+	/**
+	 * Called with the chosen move, before it is applied to the plan.
+	 */
+	void moved(RouteProfile[] routes, MoveList moves, int move);
+}
@@ -0,0 +1,233 @@
+package template;
+
+import java.util.Arrays;
+import java.util.List;
+
+import logist.simulation.Vehicle;
+import logist.task.Task;
+
+/**
+ * The regret-k cheapest insertion, building an initial solution of the
+ * stochastic local search. The cheapest feasible insertion of the pickup and
+ * delivery of every task not inserted yet is known for every vehicle; at each
+ * step, the task inserted is the one with the largest regret: the sum of the
+ * differences between the cost of its insertion in its k - 1 next best
+ * vehicles and in its best vehicle. The tasks with few good options are thus
+ * inserted before these options are taken by other tasks.
+ *
+ * After each step, only the insertions in the route that changed are
+ * evaluated again; the insertions in the other routes keep their cost.
+ *
+ */
+class RegretInsertion {
+
+	private final List<Vehicle> vehicles;
+	private final CentralizedPlan plan;
+	private final int k;
+
+	// the task actions of each route, and the load after each of them
+	private final int[][] route;
+	private final int[][] load;
+	private final int[] length;
+
+	// the cheapest insertion of each task in each vehicle: its cost
+	// (infinite if the task cannot be carried by the vehicle) and the indices
+	// in the route before which the pickup and the delivery are inserted
+	private final double[][] cost;
+	private final int[][] pickupIndex;
+	private final int[][] deliveryIndex;
+
+	private final boolean[] inserted;
+	// the costs of the insertions of one task, sorted
+	private final double[] sortedCosts;
+
+	RegretInsertion(List<Vehicle> vehicles, List<Task> tasks, int k) {
+		this.vehicles = vehicles;
+		this.plan = new CentralizedPlan(vehicles, tasks);
+		this.k = k;
+
+		int numberOfVehicles = vehicles.size();
+		int numberOfTasks = tasks.size();
+		route = new int[numberOfVehicles][2 * numberOfTasks];
+		load = new int[numberOfVehicles][2 * numberOfTasks];
+		length = new int[numberOfVehicles];
+		cost = new double[numberOfTasks][numberOfVehicles];
+		pickupIndex = new int[numberOfTasks][numberOfVehicles];
+		deliveryIndex = new int[numberOfTasks][numberOfVehicles];
+		inserted = new boolean[numberOfTasks];
+		sortedCosts = new double[numberOfVehicles];
+	}
+
+	/**
+	 * @return the plan with all the tasks inserted, or null if a task is
+	 *         heavier than every vehicle can carry
+	 */
+	CentralizedPlan build() {
+		int numberOfTasks = plan.numberOfTasks();
+		for (int task = 0; task < numberOfTasks; ++task) {
+			for (int vehicle = 0; vehicle < vehicles.size(); ++vehicle) {
+				evaluate(task, vehicle);
+			}
+		}
+
+		for (int step = 0; step < numberOfTasks; ++step) {
+			int selectedTask = CentralizedPlan.NONE;
+			double maximumRegret = Double.NEGATIVE_INFINITY;
+			double selectedCost = Double.POSITIVE_INFINITY;
+			for (int task = 0; task < numberOfTasks; ++task) {
+				if (inserted[task]) {
+					continue;
+				}
+				double regret = regret(task);
+				double bestCost = sortedCosts[0];
+				// the ties are broken by the cheapest insertion
+				if (regret > maximumRegret || (regret == maximumRegret
+						&& bestCost < selectedCost)) {
+					selectedTask = task;
+					maximumRegret = regret;
+					selectedCost = bestCost;
+				}
+			}
+
+			if (selectedCost == Double.POSITIVE_INFINITY) {
+				System.err.println("Error: problem is unsolvable. "
+						+ "Largest task weight exceeds largest vehicle capacity.");
+				return null;
+			}
+
+			double[] costs = cost[selectedTask];
+			int selectedVehicle = 0;
+			for (int vehicle = 1; vehicle < vehicles.size(); ++vehicle) {
+				if (costs[vehicle] < costs[selectedVehicle]) {
+					selectedVehicle = vehicle;
+				}
+			}
+			insert(selectedTask, selectedVehicle);
+
+			// only the route of selectedVehicle changed
+			for (int task = 0; task < numberOfTasks; ++task) {
+				if (!inserted[task]) {
+					evaluate(task, selectedVehicle);
+				}
+			}
+		}
+
+		for (int vehicle = 0; vehicle < vehicles.size(); ++vehicle) {
+			int previousTaskAction = CentralizedPlan.NONE;
+			for (int index = 0; index < length[vehicle]; ++index) {
+				int taskAction = route[vehicle][index];
+				plan.setNextTaskAction(vehicle, previousTaskAction, taskAction);
+				plan.setVehicle(CentralizedPlan.taskIndex(taskAction), vehicle);
+				previousTaskAction = taskAction;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Sorts the costs of the insertions of the task in sortedCosts.
+	 * 
+	 * @return the regret of the task: infinite if only some of its k best
+	 *         vehicles can carry it, and minus infinity if none can
+	 */
+	private double regret(int task) {
+		int numberOfVehicles = vehicles.size();
+		System.arraycopy(cost[task], 0, sortedCosts, 0, numberOfVehicles);
+		Arrays.sort(sortedCosts);
+
+		double regret = 0;
+		for (int h = 1; h < k && h < numberOfVehicles; ++h) {
+			regret += sortedCosts[h] - sortedCosts[0];
+		}
+		return Double.isNaN(regret) ? Double.NEGATIVE_INFINITY : regret;
+	}
+
+	/**
+	 * Finds the cheapest feasible insertion of the task in the route of the
+	 * vehicle: the pickup before the task action at index i and the delivery
+	 * before the task action at index j >= i of the route (at the end of the
+	 * route if the index is its length). The vehicle must be able to carry
+	 * the task from i to j.
+	 */
+	private void evaluate(int task, int vehicle) {
+		int weight = plan.task(CentralizedPlan.pickup(task)).weight;
+		int capacity = vehicles.get(vehicle).capacity();
+		int pickup = CentralizedPlan.pickup(task);
+		int delivery = CentralizedPlan.delivery(task);
+		int[] route = this.route[vehicle];
+		int[] load = this.load[vehicle];
+		int length = this.length[vehicle];
+
+		double minimumDelta = Double.POSITIVE_INFINITY;
+		for (int i = 0; i <= length; ++i) {
+			int loadBefore = i > 0 ? load[i - 1] : 0;
+			if (loadBefore + weight > capacity) {
+				continue;
+			}
+			int previous = i > 0 ? route[i - 1] : CentralizedPlan.NONE;
+			int next = i < length ? route[i] : CentralizedPlan.NONE;
+			double removed = plan.distance(vehicle, previous, next);
+
+			// the delivery right after the pickup
+			double delta = plan.distance(vehicle, previous, pickup)
+					+ plan.distance(vehicle, pickup, delivery)
+					+ plan.distance(vehicle, delivery, next) - removed;
+			if (delta < minimumDelta) {
+				minimumDelta = delta;
+				pickupIndex[task][vehicle] = i;
+				deliveryIndex[task][vehicle] = i;
+			}
+
+			// the delivery later: the task is carried over the task actions
+			// from i to j - 1
+			double pickupDelta = plan.distance(vehicle, previous, pickup)
+					+ plan.distance(vehicle, pickup, next) - removed;
+			for (int j = i + 1; j <= length; ++j) {
+				if (load[j - 1] + weight > capacity) {
+					break;
+				}
+				int before = route[j - 1];
+				int after = j < length ? route[j] : CentralizedPlan.NONE;
+				delta = pickupDelta + plan.distance(vehicle, before, delivery)
+						+ plan.distance(vehicle, delivery, after)
+						- plan.distance(vehicle, before, after);
+				if (delta < minimumDelta) {
+					minimumDelta = delta;
+					pickupIndex[task][vehicle] = i;
+					deliveryIndex[task][vehicle] = j;
+				}
+			}
+		}
+		cost[task][vehicle] = minimumDelta * vehicles.get(vehicle).costPerKm();
+	}
+
+	/**
+	 * Inserts the task in the route of the vehicle at its cheapest insertion.
+	 */
+	private void insert(int task, int vehicle) {
+		int i = pickupIndex[task][vehicle];
+		int j = deliveryIndex[task][vehicle];
+		int[] route = this.route[vehicle];
+		int length = this.length[vehicle];
+
+		// route[j..] moves by 2, route[i..j-1] by 1
+		System.arraycopy(route, j, route, j + 2, length - j);
+		System.arraycopy(route, i, route, i + 1, j - i);
+		route[i] = CentralizedPlan.pickup(task);
+		route[j + 1] = CentralizedPlan.delivery(task);
+		this.length[vehicle] = length + 2;
+
+		int[] load = this.load[vehicle];
+		int currentLoad = 0;
+		for (int index = 0; index < length + 2; ++index) {
+			int weight = plan.task(route[index]).weight;
+			if (CentralizedPlan.status(route[index]) == CentralizedPlan.PICK_UP) {
+				currentLoad += weight;
+			} else {
+				currentLoad -= weight;
+			}
+			load[index] = currentLoad;
+		}
+		inserted[task] = true;
+	}
+}
@@ -0,0 +1,197 @@
+package template;
+
+/**
+ * The profile of the route of one vehicle in a centralized plan: the task
+ * actions in order, the position of each task action in the route and the
+ * load of the vehicle after each task action. The maximum and minimum loads
+ * over a range of positions are answered in constant time from sparse tables,
+ * so that the constraints of a move inside the route are checked without
+ * walking it.
+ *
+ * The arrays are allocated once for the number of tasks of the plan and
+ * filled again by build() for every route.
+ *
+ */
+class RouteProfile {
+
+	private int vehicle;
+	private int length;
+	private final int[] route;
+	private final int[] position;
+	private final int[] weight;
+	// maxLoad[k][i] is the maximum load over the positions i to i + 2^k - 1
+	private final int[][] maxLoad;
+	// minLoad[k][i] is the minimum load over the positions i to i + 2^k - 1
+	private final int[][] minLoad;
+	// closing[i] is the first position from which the positions from i hold
+	// both task actions of a task, or length if there is none
+	private final int[] closing;
+	// log2[l] is floor(log2(l))
+	private final int[] log2;
+
+	RouteProfile(int numberOfTasks) {
+		int numberOfTaskActions = 2 * numberOfTasks;
+		route = new int[numberOfTaskActions];
+		position = new int[numberOfTaskActions];
+		weight = new int[numberOfTaskActions];
+
+		log2 = new int[numberOfTaskActions + 2];
+		for (int l = 2; l < log2.length; ++l) {
+			log2[l] = log2[l / 2] + 1;
+		}
+		int levels = log2[numberOfTaskActions + 1] + 1;
+		maxLoad = new int[levels][numberOfTaskActions];
+		minLoad = new int[levels][numberOfTaskActions];
+		closing = new int[numberOfTaskActions + 1];
+	}
+
+	/**
+	 * Fills the profile with the route of the vehicle in the plan.
+	 */
+	void build(CentralizedPlan plan, int vehicle) {
+		build(plan, vehicle, CentralizedPlan.NONE);
+	}
+
+	/**
+	 * Fills the profile with the route of the vehicle in the plan, without
+	 * the pickup and delivery of skippedTask (if it is not NONE).
+	 */
+	void build(CentralizedPlan plan, int vehicle, int skippedTask) {
+		this.vehicle = vehicle;
+		length = 0;
+		int load = 0;
+		int taskAction = plan.firstTaskAction(vehicle);
+		while (taskAction != CentralizedPlan.NONE) {
+			if (CentralizedPlan.taskIndex(taskAction) == skippedTask) {
+				taskAction = plan.nextTaskAction(taskAction);
+				continue;
+			}
+			int w = plan.task(taskAction).weight;
+			if (CentralizedPlan.status(taskAction) == CentralizedPlan.DELIVERY) {
+				w = -w;
+			}
+			load += w;
+
+			route[length] = taskAction;
+			position[taskAction] = length;
+			weight[length] = w;
+			maxLoad[0][length] = load;
+			minLoad[0][length] = load;
+			++length;
+			taskAction = plan.nextTaskAction(taskAction);
+		}
+
+		for (int k = 1; (1 << k) <= length; ++k) {
+			int half = 1 << (k - 1);
+			for (int i = 0; i + (1 << k) <= length; ++i) {
+				maxLoad[k][i] = Math.max(maxLoad[k - 1][i],
+						maxLoad[k - 1][i + half]);
+				minLoad[k][i] = Math.min(minLoad[k - 1][i],
+						minLoad[k - 1][i + half]);
+			}
+		}
+
+		closing[length] = length;
+		for (int i = length - 1; i >= 0; --i) {
+			closing[i] = closing[i + 1];
+			if (CentralizedPlan.status(route[i]) == CentralizedPlan.PICK_UP) {
+				int delivery = CentralizedPlan.delivery(CentralizedPlan
+						.taskIndex(route[i]));
+				closing[i] = Math.min(closing[i], position[delivery]);
+			}
+		}
+	}
+
+	int vehicle() {
+		return vehicle;
+	}
+
+	int length() {
+		return length;
+	}
+
+	int taskAction(int index) {
+		return route[index];
+	}
+
+	/**
+	 * @return the task action at this index, or NONE if the index is before
+	 *         the start or after the end of the route
+	 */
+	int taskActionOrNone(int index) {
+		return index >= 0 && index < length ? route[index]
+				: CentralizedPlan.NONE;
+	}
+
+	/**
+	 * @return the index in the route of a task action of the route
+	 */
+	int position(int taskAction) {
+		return position[taskAction];
+	}
+
+	/**
+	 * @return whether the task action is in the route
+	 */
+	boolean contains(int taskAction) {
+		int index = position[taskAction];
+		return index < length && route[index] == taskAction;
+	}
+
+	/**
+	 * @return the change of load of the task action at this index: the weight
+	 *         of its task, negative for a delivery
+	 */
+	int weight(int index) {
+		return weight[index];
+	}
+
+	/**
+	 * @return the load after the task action at this index
+	 */
+	int load(int index) {
+		return maxLoad[0][index];
+	}
+
+	/**
+	 * @return the load before the task action at this index: 0 at the start
+	 *         of the route
+	 */
+	int loadBefore(int index) {
+		return index > 0 ? maxLoad[0][index - 1] : 0;
+	}
+
+	/**
+	 * @return the maximum load after the task actions from index from to
+	 *         index to (both included), or 0 if the range is empty
+	 */
+	int maxLoad(int from, int to) {
+		if (from > to) {
+			return 0;
+		}
+		int k = log2[to - from + 1];
+		return Math.max(maxLoad[k][from], maxLoad[k][to - (1 << k) + 1]);
+	}
+
+	/**
+	 * @return the minimum load after the task actions from index from to
+	 *         index to (both included), or Integer.MAX_VALUE if the range is
+	 *         empty
+	 */
+	int minLoad(int from, int to) {
+		if (from > to) {
+			return Integer.MAX_VALUE;
+		}
+		int k = log2[to - from + 1];
+		return Math.min(minLoad[k][from], minLoad[k][to - (1 << k) + 1]);
+	}
+
+	/**
+	 * @return the smallest index such that the task actions from index to it
+	 *         hold both the pickup and the delivery of a task, or the length
+	 *         of the route if there is none
+	 */
+	int closingIndex(int index) {
+		return closing[index];
+	}
+}
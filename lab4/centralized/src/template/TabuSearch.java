@@ -0,0 +1,127 @@
+package template;
+
+import java.util.Random;
+
+/**
+ * Tabu search: the best neighbour is always taken, even if it costs more than
+ * the plan, unless its move is tabu. The attributes made tabu are pairs of a
+ * task and a vehicle: a task leaving a vehicle may not be given back to it,
+ * and the tasks at the ends of the task actions moved inside a route may not
+ * be moved again in this route, for a number of steps drawn between TENURE
+ * and twice TENURE times the number of tasks, so that the search does not run
+ * in cycles of a fixed length. A tabu move is still taken if it leads to a
+ * plan cheaper than the best plan found so far (aspiration).
+ *
+ */
+class TabuSearch implements MoveSelection {
+
+	// minimum number of steps during which an attribute stays tabu, relative
+	// to the number of tasks
+	private static final double TENURE = 0.5;
+	private static final int MINIMUM_TENURE = 5;
+
+	private final Random random;
+
+	// tabuUntil[task][vehicle] is the last step at which the task may not be
+	// put or moved in the vehicle
+	private int[][] tabuUntil;
+	private int step;
+	private int tenure;
+
+	TabuSearch(Random random) {
+		this.random = random;
+	}
+
+	@Override
+	public void start(CentralizedPlan plan, TimeBudget budget) {
+		tabuUntil = new int[plan.numberOfTasks()][plan.numberOfVehicles()];
+		step = 0;
+		tenure = Math.max(MINIMUM_TENURE,
+				(int) (TENURE * plan.numberOfTasks()));
+	}
+
+	@Override
+	public int choose(CentralizedPlan plan, RouteProfile[] routes,
+			MoveList moves, double bestCost) {
+		++step;
+
+		// the best move which is not tabu, or leads to a new best plan,
+		// chosen at random among the moves with this change of cost
+		double minimumCost = Double.MAX_VALUE;
+		int minimumCostMove = MoveList.NONE;
+		int numberOfMinimumCostMoves = 0;
+
+		for (int move = 0; move < moves.size(); ++move) {
+			double delta = moves.delta(move);
+			if (delta > minimumCost
+					|| (isTabu(routes, moves, move) && plan.cost() + delta
+							>= bestCost)) {
+				continue;
+			}
+			if (delta < minimumCost) {
+				minimumCost = delta;
+				minimumCostMove = move;
+				numberOfMinimumCostMoves = 1;
+			} else {
+				// keep each of the moves with the same probability
+				++numberOfMinimumCostMoves;
+				if (random.nextInt(numberOfMinimumCostMoves) == 0) {
+					minimumCostMove = move;
+				}
+			}
+		}
+		return minimumCostMove;
+	}
+
+	/**
+	 * @return the task at index_1 in the route of vehicle_1 of the move
+	 */
+	private static int task_1(RouteProfile[] routes, MoveList moves, int move) {
+		return CentralizedPlan.taskIndex(routes[moves.vehicle_1(move)]
+				.taskAction(moves.index_1(move)));
+	}
+
+	/**
+	 * @return the task at index_2 in the route of vehicle_2 of the move,
+	 *         which is the route of vehicle_1 for the moves inside a route
+	 */
+	private static int task_2(RouteProfile[] routes, MoveList moves, int move) {
+		return CentralizedPlan.taskIndex(routes[moves.vehicle_2(move)]
+				.taskAction(moves.index_2(move)));
+	}
+
+	private boolean isTabu(RouteProfile[] routes, MoveList moves, int move) {
+		int task_1 = task_1(routes, moves, move);
+		int vehicle_1 = moves.vehicle_1(move);
+		int vehicle_2 = moves.vehicle_2(move);
+		switch (moves.type(move)) {
+		case MoveList.CHANGE_FIRST_TASK_BETWEEN_VEHICLES:
+		case MoveList.RELOCATE:
+			return tabuUntil[task_1][vehicle_2] >= step;
+		case MoveList.CROSS_EXCHANGE:
+			return tabuUntil[task_1][vehicle_2] >= step
+					|| tabuUntil[task_2(routes, moves, move)][vehicle_1] >= step;
+		default:
+			return tabuUntil[task_1][vehicle_1] >= step
+					|| tabuUntil[task_2(routes, moves, move)][vehicle_1] >= step;
+		}
+	}
+
+	@Override
+	public void moved(RouteProfile[] routes, MoveList moves, int move) {
+		int task_1 = task_1(routes, moves, move);
+		tabuUntil[task_1][moves.vehicle_1(move)] = step + tenure
+				+ random.nextInt(tenure);
+		switch (moves.type(move)) {
+		case MoveList.CHANGE_FIRST_TASK_BETWEEN_VEHICLES:
+		case MoveList.RELOCATE:
+			break;
+		default:
+			// CROSS_EXCHANGE takes task_2 out of vehicle_2, the moves inside
+			// a route have vehicle_2 equal to vehicle_1
+			int task_2 = task_2(routes, moves, move);
+			tabuUntil[task_2][moves.vehicle_2(move)] = step + tenure
+					+ random.nextInt(tenure);
+		}
+	}
+}
@@ -1,8 +1,7 @@
 package template;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.List;
 
 import logist.simulation.Vehicle;
 import logist.task.Task;
@@ -11,148 +10,231 @@ import logist.topology.Topology.City;
 /**
  * This class implements a centralized plan, hence a different plan for several
  * vehicles. This is implemented by the following mapping : vehicle_v -> first
- * task --> next task --> ... --> next task with '->' := Map(Vehicle to
- * TaskAction) with '-->' := Map(TaskAction to TaskAction)
- * 
+ * task action --> next task action --> ... --> NONE with '->' :=
+ * firstOfVehicle and '-->' := next
+ *
+ * The task actions are indices: the pickup of the i-th task is 2 * i + PICK_UP
+ * and its delivery 2 * i + DELIVERY; the vehicles are indices in the list of
+ * vehicles. vehicleOf gives the vehicle carrying each task. The vehicles and
+ * tasks are shared by all the copies of a plan, so that a clone only copies
+ * three arrays of int.
+ *
  * @author E&JT
  *
  */
 public class CentralizedPlan implements Cloneable {
 
-    private Map<Vehicle, TaskAction> vehicleToFirstTaskAction;
-    private Map<TaskAction, TaskAction> taskActionToTaskAction;
+    public static final int NONE = -1;
+    // the status of a task action, see pickup and delivery
+    public static final int PICK_UP = 0;
+    public static final int DELIVERY = 1;
+
+    private final List<Vehicle> vehicles;
+    private final Task[] tasks;
+
+    private int[] firstOfVehicle;
+    private int[] next;
+    private int[] vehicleOf;
+
+    // the cost of the plan, NaN when it has to be computed again
+    private double cost = Double.NaN;
+
+    /**
+     * Creates an empty plan: no task is assigned to any vehicle.
+     */
+    public CentralizedPlan(List<Vehicle> vehicles, List<Task> tasks) {
+	this.vehicles = vehicles;
+	this.tasks = tasks.toArray(new Task[tasks.size()]);
+
+	this.firstOfVehicle = new int[vehicles.size()];
+	this.next = new int[2 * this.tasks.length];
+	this.vehicleOf = new int[this.tasks.length];
+	Arrays.fill(firstOfVehicle, NONE);
+	Arrays.fill(next, NONE);
+	Arrays.fill(vehicleOf, NONE);
+    }
+
+    public static int pickup(int taskIndex) {
+	return 2 * taskIndex + PICK_UP;
+    }
+
+    public static int delivery(int taskIndex) {
+	return 2 * taskIndex + DELIVERY;
+    }
+
+    public static int taskIndex(int taskAction) {
+	return taskAction / 2;
+    }
+
+    /**
+     * @return PICK_UP or DELIVERY
+     */
+    public static int status(int taskAction) {
+	return taskAction % 2;
+    }
+
+    public int numberOfVehicles() {
+	return vehicles.size();
+    }
+
+    public int numberOfTasks() {
+	return tasks.length;
+    }
 
-    // private Map<Task, Integer> time;
-    // private Map<Task, Vehicle> taskToVehicle;
+    public Vehicle vehicle(int vehicle) {
+	return vehicles.get(vehicle);
+    }
 
-    public CentralizedPlan(Map<Vehicle, TaskAction> vehicleToFirstTaskAction,
-	    Map<TaskAction, TaskAction> taskActionToTaskAction) {
-	this.vehicleToFirstTaskAction = vehicleToFirstTaskAction;
-	this.taskActionToTaskAction = taskActionToTaskAction;
-	// this.time = time;
-	// this.taskToVehicle = taskToVehicle;
+    public int vehicleIndex(Vehicle vehicle) {
+	return vehicles.indexOf(vehicle);
     }
 
-    public CentralizedPlan(CentralizedPlan plan) {
-	this(plan.vehicleToFirstTaskAction, plan.taskActionToTaskAction);
+    public Task task(int taskAction) {
+	return tasks[taskIndex(taskAction)];
+    }
+
+    /**
+     * @return the city where the task action takes place
+     */
+    public City city(int taskAction) {
+	Task task = task(taskAction);
+	return status(taskAction) == PICK_UP ? task.pickupCity
+		: task.deliveryCity;
     }
 
-    public Map<Vehicle, TaskAction> vehicleToFirstTaskAction() {
-	return vehicleToFirstTaskAction;
+    public int firstTaskAction(int vehicle) {
+	return firstOfVehicle[vehicle];
     }
 
-    public Map<TaskAction, TaskAction> taskActionToTaskAction() {
-	return taskActionToTaskAction;
+    public int nextTaskAction(int taskAction) {
+	return next[taskAction];
     }
 
-    // public Map<Task, Integer> time() {
-    // return time;
-    // }
+    public int vehicleOf(int taskIndex) {
+	return vehicleOf[taskIndex];
+    }
 
-    // public Map<Task, Vehicle> vehicle() {
-    // return taskToVehicle;
-    // }
+    /**
+     * @return the task actions of the vehicle, in order
+     */
+    public int[] route(int vehicle) {
+	int length = 0;
+	for (int a = firstOfVehicle[vehicle]; a != NONE; a = next[a]) {
+	    ++length;
+	}
+	int[] route = new int[length];
+	int i = 0;
+	for (int a = firstOfVehicle[vehicle]; a != NONE; a = next[a]) {
+	    route[i++] = a;
+	}
+	return route;
+    }
 
     /**
-     * This method compute the total cost for all vehicles' plans
-     * 
+     * This method compute the total cost for all vehicles' plans, unless it
+     * is known since the last change
      * @return sum over vehicles of cost of plan
      */
     public double cost() {
-	double cost = 0;
-	Set<Vehicle> vehicles = vehicleToFirstTaskAction.keySet();
-
-	for (Vehicle vehicle : vehicles) {
-	    City currentCity = vehicle.getCurrentCity();
-	    double costPerKm = vehicle.costPerKm();
-
-	    TaskAction firstTask = vehicleToFirstTaskAction.get(vehicle);
-	    if (firstTask != null) {
-		cost += currentCity.distanceTo(firstTask.task().pickupCity)
-			* costPerKm;
-
-		TaskAction nextTask = taskActionToTaskAction.get(firstTask);
-
-		while (nextTask != null) {
-		    Task task = nextTask.task();
-		    if (nextTask.status() == TaskAction.PICK_UP) {
-			cost += currentCity.distanceTo(task.pickupCity)
-				* costPerKm;
-			currentCity = task.pickupCity;
-		    } else if (nextTask.status() == TaskAction.DELIVERY) {
-			cost += currentCity.distanceTo(task.deliveryCity)
-				* costPerKm;
-			currentCity = task.deliveryCity;
-		    }
-
-		    nextTask = taskActionToTaskAction.get(nextTask);
-		}
-	    }
+	if (Double.isNaN(cost)) {
+	    updateCost();
 	}
 	return cost;
     }
 
-    public void setNextTask(Vehicle vehicle, TaskAction taskAction) {
-	vehicleToFirstTaskAction.put(vehicle, taskAction);
+    /**
+     * Computes the cost of the plan again, from the plans of all vehicles.
+     */
+    public void updateCost() {
+	double cost = 0;
+	for (int vehicle = 0; vehicle < vehicles.size(); ++vehicle) {
+	    cost += cost(vehicle);
+	}
+	this.cost = cost;
+    }
+
+    /**
+     * @return the cost of the plan of one vehicle
+     */
+    public double cost(int vehicle) {
+	City currentCity = vehicles.get(vehicle).getCurrentCity();
+	double distance = 0;
+	for (int a = firstOfVehicle[vehicle]; a != NONE; a = next[a]) {
+	    City city = city(a);
+	    distance += currentCity.distanceTo(city);
+	    currentCity = city;
+	}
+	return distance * vehicles.get(vehicle).costPerKm();
     }
 
-    public void setNextTask(TaskAction taskAction_1, TaskAction taskAction_2) {
-	if (taskAction_1.equals(taskAction_2)) {
-	    System.err.println("Error on setNextTask");
+    /**
+     * @return the distance between the cities of the two task actions, from
+     *         the current city of the vehicle if taskAction_1 is NONE, and 0
+     *         if taskAction_2 is NONE
+     */
+    public double distance(int vehicle, int taskAction_1, int taskAction_2) {
+	if (taskAction_2 == NONE) {
+	    return 0;
 	}
-	taskActionToTaskAction.put(taskAction_1, taskAction_2);
+	City city = taskAction_1 == NONE ? vehicles.get(vehicle)
+		.getCurrentCity() : city(taskAction_1);
+	return city.distanceTo(city(taskAction_2));
+    }
+
+    public void setFirstTaskAction(int vehicle, int taskAction) {
+	firstOfVehicle[vehicle] = taskAction;
+	cost = Double.NaN;
+    }
 
+    public void setNextTaskAction(int taskAction_1, int taskAction_2) {
+	if (taskAction_1 == taskAction_2) {
+	    System.err.println("Error on setNextTaskAction");
+	}
+	next[taskAction_1] = taskAction_2;
+	cost = Double.NaN;
     }
 
-    /*
-     * public void updateTime(Vehicle vehicle) { Task firstTask =
-     * vehicleToFirstTask.get(vehicle); if (firstTask != null) {
-     * time.put(firstTask, 1); }
-     * 
-     * Task nextTask = taskToTask.get(firstTask); int i = 2; while (nextTask !=
-     * null) { time.put(taskToTask.get(nextTask), i++); nextTask =
-     * taskToTask.get(nextTask); } }
+    /**
+     * Sets the task action following previousTaskAction in the plan of the
+     * vehicle, or its first task action if previousTaskAction is NONE.
      */
+    public void setNextTaskAction(int vehicle, int previousTaskAction,
+	    int taskAction) {
+	if (previousTaskAction == NONE) {
+	    setFirstTaskAction(vehicle, taskAction);
+	} else {
+	    setNextTaskAction(previousTaskAction, taskAction);
+	}
+    }
 
-    // public void setVehicle(Task task, Vehicle vehicle) {
-    // taskToVehicle.put(task, vehicle);
-    // }
+    public void setVehicle(int taskIndex, int vehicle) {
+	vehicleOf[taskIndex] = vehicle;
+    }
 
     public CentralizedPlan clone() {
 	CentralizedPlan plan;
 	try {
 	    plan = (CentralizedPlan) super.clone();
-
-	    Map<Vehicle, TaskAction> copy = new HashMap<Vehicle, TaskAction>();
-	    for (Map.Entry<Vehicle, TaskAction> entry : this.vehicleToFirstTaskAction
-		    .entrySet()) {
-		copy.put(entry.getKey(), entry.getValue());
-	    }
-	    plan.vehicleToFirstTaskAction = copy;
-	    Map<TaskAction, TaskAction> copy2 = new HashMap<TaskAction, TaskAction>();
-	    for (Map.Entry<TaskAction, TaskAction> entry : this.taskActionToTaskAction
-		    .entrySet()) {
-		copy2.put(entry.getKey(), entry.getValue());
-	    }
-	    plan.taskActionToTaskAction = copy2;
 	} catch (CloneNotSupportedException e) {
 	    return null; // will never happen
 	}
+	plan.firstOfVehicle = new int[firstOfVehicle.length];
+	System.arraycopy(firstOfVehicle, 0, plan.firstOfVehicle, 0,
+		firstOfVehicle.length);
+	plan.next = new int[next.length];
+	System.arraycopy(next, 0, plan.next, 0, next.length);
+	plan.vehicleOf = new int[vehicleOf.length];
+	System.arraycopy(vehicleOf, 0, plan.vehicleOf, 0, vehicleOf.length);
 	return plan;
     }
 
     @Override
     public int hashCode() {
+	// vehicleOf is given by the two other arrays
 	final int prime = 31;
 	int result = 1;
-	result = prime
-		* result
-		+ ((taskActionToTaskAction == null) ? 0
-			: taskActionToTaskAction.hashCode());
-	result = prime
-		* result
-		+ ((vehicleToFirstTaskAction == null) ? 0
-			: vehicleToFirstTaskAction.hashCode());
+	result = prime * result + Arrays.hashCode(firstOfVehicle);
+	result = prime * result + Arrays.hashCode(next);
 	return result;
     }
 
@@ -165,16 +247,9 @@ public class CentralizedPlan implements Cloneable {
 	if (getClass() != obj.getClass())
 	    return false;
 	CentralizedPlan other = (CentralizedPlan) obj;
-	if (taskActionToTaskAction == null) {
-	    if (other.taskActionToTaskAction != null)
-		return false;
-	} else if (!taskActionToTaskAction.equals(other.taskActionToTaskAction))
+	if (!Arrays.equals(firstOfVehicle, other.firstOfVehicle))
 	    return false;
-	if (vehicleToFirstTaskAction == null) {
-	    if (other.vehicleToFirstTaskAction != null)
-		return false;
-	} else if (!vehicleToFirstTaskAction
-		.equals(other.vehicleToFirstTaskAction))
+	if (!Arrays.equals(next, other.next))
 	    return false;
 	return true;
     }
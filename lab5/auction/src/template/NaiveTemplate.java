@@ -76,7 +76,17 @@ public class NaiveTemplate implements AuctionBehavior {
 	System.out.println("bid   (ms): " + timeout_bid);
 	System.out.println("plan  (ms): " + timeout_plan);
 
-	SLS = new StochasticLocalSearch(agent.vehicles(), timeout_plan);
+	// number of stochastic local searches run in parallel
+	int numberOfStarts = agent.readProperty("starts", Integer.class, 1);
+	// number of threads evaluating the neighbours of long routes
+	int parallelism = agent.readProperty("parallelism", Integer.class, 1);
+	// rule choosing the next plan among the neighbours
+	// Throws IllegalArgumentException if the metaheuristic is unknown
+	StochasticLocalSearch.Metaheuristic metaheuristic = StochasticLocalSearch.Metaheuristic
+		.valueOf(agent.readProperty("metaheuristic", String.class,
+			"STOCHASTIC").toUpperCase());
+	SLS = new StochasticLocalSearch(agent.vehicles(), timeout_plan,
+		numberOfStarts, parallelism, metaheuristic, random.nextLong());
 	tasksList = new ArrayList<Task>();
 	costCurrentPlan = 0;
 	costNewPlan = 0;
@@ -112,7 +122,9 @@ public class NaiveTemplate implements AuctionBehavior {
 	// TODO: maybe do not recompute whole SLS every time?
 	List<Task> tasksList_tmp = new ArrayList<Task>(tasksList);
 	tasksList_tmp.add(task);
-	costNewPlan = SLS.createPlan(tasksList_tmp).cost();
+	// the plans are not materialized for a bid
+	costNewPlan = SLS.createPlan(tasksList_tmp,
+		new TimeBudget(timeout_bid)).cost();
 
 	// SLS may have have found a better new plan
 	double marginalCost = Math.max(costNewPlan - costCurrentPlan, 0);
@@ -138,10 +150,26 @@ public class NaiveTemplate implements AuctionBehavior {
     public List<Plan> plan(List<Vehicle> vehicles, TaskSet tasks) {
 	long time_start = System.currentTimeMillis();
 
-	CentralizedPlan centralizedPlan = SLS.createPlan(new ArrayList<Task>(
-		tasks));
+	TimeBudget budget = new TimeBudget(timeout_plan);
+	List<Task> planTasks = new ArrayList<Task>(tasks);
+
+	// the plans of the initial solution are built once, to know how long
+	// building the plans of the final solution will take, and the search
+	// starts from it
+	CentralizedPlan initialPlan = SLS.initialSolution(planTasks);
+	if (initialPlan != null) {
+	    long start = System.nanoTime();
+	    for (Vehicle vehicle : vehicles) {
+		buildPlan(initialPlan, vehicle);
+	    }
+	    budget.setMaterializationEstimate(System.nanoTime() - start);
+	}
+
+	CentralizedPlan centralizedPlan = SLS.createPlan(planTasks,
+		initialPlan, budget);
 
 	List<Plan> plans = new ArrayList<Plan>();
+	budget.startMaterialization();
 
 	for (Vehicle vehicle : vehicles) {
 	    Plan plan = buildPlan(centralizedPlan, vehicle);
@@ -151,12 +179,14 @@ public class NaiveTemplate implements AuctionBehavior {
 
 	while (plans.size() < vehicles.size())
 	    plans.add(Plan.EMPTY);
+	budget.endMaterialization();
 
 	long time_end = System.currentTimeMillis();
 	long duration = time_end - time_start;
 	System.out.println("The plan was generated in " + duration
 		+ " milliseconds.");
 	System.out.println("Plan cost: " + centralizedPlan.cost());
+	System.out.println("Time budget: " + budget);
 	System.out.println("Reward:"
 		+ (tasks.rewardSum() - centralizedPlan.cost()));
 	System.out.println("#tasks:" + tasks.size());
@@ -169,19 +199,19 @@ public class NaiveTemplate implements AuctionBehavior {
 	City currentCity = vehicle.getCurrentCity();
 	Plan plan = new Plan(currentCity);
 
-	TaskAction taskAction = centralizedPlan.vehicleToFirstTaskAction().get(
-		vehicle);
+	int taskAction = centralizedPlan.firstTaskAction(centralizedPlan
+		.vehicleIndex(vehicle));
 
-	while (taskAction != null) {
-	    Task task = taskAction.task();
+	while (taskAction != CentralizedPlan.NONE) {
+	    Task task = centralizedPlan.task(taskAction);
 
-	    if (taskAction.status() == TaskAction.PICK_UP) {
+	    if (CentralizedPlan.status(taskAction) == CentralizedPlan.PICK_UP) {
 		for (City city : currentCity.pathTo(task.pickupCity)) {
 		    plan.appendMove(city);
 		}
 		plan.appendPickup(task);
 		currentCity = task.pickupCity;
-	    } else if (taskAction.status() == TaskAction.DELIVERY) {
+	    } else if (CentralizedPlan.status(taskAction) == CentralizedPlan.DELIVERY) {
 		for (City city : currentCity.pathTo(task.deliveryCity)) {
 		    plan.appendMove(city);
 		}
@@ -189,8 +219,7 @@ public class NaiveTemplate implements AuctionBehavior {
 		currentCity = task.deliveryCity;
 	    }
 
-	    taskAction = centralizedPlan.taskActionToTaskAction().get(
-		    taskAction);
+	    taskAction = centralizedPlan.nextTaskAction(taskAction);
 	}
 	return plan;
     }
@@ -0,0 +1,76 @@
+package template;
+
+import java.util.Random;
+
+/**
+ * Simulated annealing: a random neighbour is taken if it is cheaper, or else
+ * with probability exp(-delta / temperature). The temperature decreases
+ * geometrically with the time elapsed, from its initial value at the start of
+ * the search to FINAL_TEMPERATURE times this value at the end of the search
+ * given by the time budget, so that the search ends as a descent whatever the
+ * timeout.
+ *
+ */
+class SimulatedAnnealing implements MoveSelection {
+
+    // initial temperature, relative to the average cost of a task in the
+    // initial plan: at the start, a neighbour costing this much more than
+    // the plan is taken with probability 1/e
+    private static final double INITIAL_TEMPERATURE = 1.0;
+    // temperature at the end of the search, relative to the initial
+    // temperature
+    private static final double FINAL_TEMPERATURE = 1e-3;
+
+    private final Random random;
+
+    // System.nanoTime() at the start and at the end of the search
+    private long startTime;
+    private long deadline;
+    private double initialTemperature;
+
+    SimulatedAnnealing(Random random) {
+	this.random = random;
+    }
+
+    @Override
+    public void start(CentralizedPlan plan, TimeBudget budget) {
+	this.startTime = System.nanoTime();
+	this.deadline = budget.searchDeadline();
+	initialTemperature = INITIAL_TEMPERATURE * plan.cost()
+		/ Math.max(1, plan.numberOfTasks());
+    }
+
+    /**
+     * @return the temperature at this System.nanoTime()
+     */
+    double temperature(long time) {
+	double elapsed = deadline > startTime ? (double) (time - startTime)
+		/ (deadline - startTime) : 1;
+	elapsed = Math.min(Math.max(elapsed, 0), 1);
+	return initialTemperature * Math.pow(FINAL_TEMPERATURE, elapsed);
+    }
+
+    @Override
+    public int choose(CentralizedPlan plan, RouteProfile[] routes,
+	    MoveList moves, double bestCost) {
+	if (moves.size() == 0) {
+	    return MoveList.NONE;
+	}
+
+	int move = random.nextInt(moves.size());
+	double delta = moves.delta(move);
+	if (delta <= 0) {
+	    return move;
+	}
+	double temperature = temperature(System.nanoTime());
+	if (temperature > 0
+		&& random.nextDouble() < Math.exp(-delta / temperature)) {
+	    return move;
+	}
+	return MoveList.NONE;
+    }
+
+    @Override
+    public void moved(RouteProfile[] routes, MoveList moves, int move) {
+    }
+}
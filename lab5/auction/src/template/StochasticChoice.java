@@ -0,0 +1,48 @@
+package template;
+
+import java.util.Random;
+
+/**
+ * The first rule of the stochastic local search: the best neighbour with some
+ * probability, the same plan with some other probability, and a random
+ * neighbour otherwise.
+ *
+ */
+class StochasticChoice implements MoveSelection {
+
+    private final Random random;
+    private final double probabilityPickMinimumPlan;
+    private final double probabilityPickOld;
+
+    StochasticChoice(Random random, double probabilityPickMinimumPlan,
+	    double probabilityPickOld) {
+	this.random = random;
+	this.probabilityPickMinimumPlan = probabilityPickMinimumPlan;
+	this.probabilityPickOld = probabilityPickOld;
+    }
+
+    @Override
+    public void start(CentralizedPlan plan, TimeBudget budget) {
+    }
+
+    @Override
+    public int choose(CentralizedPlan plan, RouteProfile[] routes,
+	    MoveList moves, double bestCost) {
+
+	double p1 = probabilityPickMinimumPlan;
+	double p2 = p1 + probabilityPickOld;
+	double p = random.nextDouble();
+
+	if (moves.size() == 0 || (p1 < p && p <= p2)) {
+	    return MoveList.NONE;
+	} else if (p <= p1) {
+	    return moves.minimumCostMove(random);
+	} else {
+	    return random.nextInt(moves.size());
+	}
+    }
+
+    @Override
+    public void moved(RouteProfile[] routes, MoveList moves, int move) {
+    }
+}
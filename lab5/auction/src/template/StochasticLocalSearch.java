@@ -1,13 +1,17 @@
 package template;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import logist.simulation.Vehicle;
 import logist.task.Task;
@@ -23,53 +27,285 @@ public class StochasticLocalSearch {
     // search algorithm stops
     private final int COUNTDOWN = 10000;
 
+    // number of vehicles whose insertion costs make the regret of a task in
+    // the initial solution (see RegretInsertion)
+    private final int REGRET = 3;
+
+    // maximum number of consecutive task actions moved by the or-opt operator
+    private static final int OR_OPT_LENGTH = 3;
+
     private final double probabilityPickMinimumPlan = 0.7;
     private final double probabilityPickOld = 0.1;
 
+    /**
+     * The rules choosing the next plan among the neighbours of the plan.
+     */
+    public enum Metaheuristic {
+	// the best neighbour with probability probabilityPickMinimumPlan, the
+	// same plan with probability probabilityPickOld, else a random one
+	STOCHASTIC,
+	// see SimulatedAnnealing
+	SIMULATED_ANNEALING,
+	// see TabuSearch
+	TABU_SEARCH
+    }
+
+    private final Metaheuristic metaheuristic;
+
+    // number of independent searches (trajectories) run in parallel, from
+    // different initial solutions
+    private final int numberOfStarts;
+    private final long seed;
+    private final Random random;
+
+    // number of threads evaluating the 'change task order' neighbours of
+    // long routes, 1 to evaluate them on the thread of the search
+    private final int parallelism;
+    // routes with fewer task actions are evaluated sequentially
+    private static final int PARALLEL_THRESHOLD = 128;
+    // ranges of first indices smaller than this are evaluated sequentially
+    private static final int SEQUENTIAL_THRESHOLD = 8;
+
+    private interface RangeBody {
+	void process(int from, int to);
+    }
+
+    private static class RangeTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private final RangeBody body;
+	private final int from;
+	private final int to;
+
+	RangeTask(RangeBody body, int from, int to) {
+	    this.body = body;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+	    if (to - from <= SEQUENTIAL_THRESHOLD) {
+		body.process(from, to);
+	    } else {
+		int middle = (from + to) >>> 1;
+		invokeAll(new RangeTask(body, from, middle), new RangeTask(
+			body, middle, to));
+	    }
+	}
+    }
+
+    // the pool of the parallel evaluation, shared by the trajectories, and
+    // null outside createPlan() or if parallelism is 1
+    private ForkJoinPool pool;
+
     private String stochasticLocalSearchStopCause = "";
 
+    // the profiles of the routes of the vehicles at each step
+    private RouteProfile[] routeProfiles;
+    // the profile of the route of the vehicle selected at each step, without
+    // the task it relocates
+    private RouteProfile relocateProfile;
+    // the task actions of a route being changed by a move
+    private int[] newRoute;
+    // the moves to the neighbours of the plan at each step
+    private MoveList moves;
+    // where the moves of each first index start in moves, for the parallel
+    // evaluation
+    private int[] offsets;
+
     private CentralizedPlan bestPlanSoFar = null;
 
     public StochasticLocalSearch(List<Vehicle> vehicles, long timeout) {
+	this(vehicles, timeout, 1, 1, Metaheuristic.STOCHASTIC, new Random()
+		.nextLong());
+    }
+
+    public StochasticLocalSearch(List<Vehicle> vehicles, long timeout,
+	    int numberOfStarts, int parallelism, Metaheuristic metaheuristic,
+	    long seed) {
 	System.out.println("Probability p = " + probabilityPickMinimumPlan
 		+ " - " + probabilityPickOld);
 
 	this.vehicles = vehicles;
 	this.timeout = timeout;
+	this.numberOfStarts = numberOfStarts;
+	this.parallelism = parallelism;
+	this.metaheuristic = metaheuristic;
+	this.seed = seed;
+	this.random = new Random(seed);
 
 	assert (probabilityPickMinimumPlan + probabilityPickOld <= 1.0);
     }
 
+    /**
+     * One trajectory of a multi-start search.
+     */
+    private StochasticLocalSearch(StochasticLocalSearch search, long seed) {
+	this.vehicles = search.vehicles;
+	this.timeout = search.timeout;
+	this.numberOfStarts = 1;
+	this.parallelism = search.parallelism;
+	this.pool = search.pool;
+	this.metaheuristic = search.metaheuristic;
+	this.seed = seed;
+	this.random = new Random(seed);
+    }
+
     public CentralizedPlan createPlan(List<Task> tasks) {
-	long time_start = System.currentTimeMillis();
+	return createPlan(tasks, new TimeBudget(timeout));
+    }
 
-	CentralizedPlan plan = selectInitialSolution(tasks);
-	CentralizedPlan bestPlan = null;
-	bestPlanSoFar = plan;
+    /**
+     * Searches until the end of the search given by the budget, the time to
+     * materialize the plans being left after it.
+     */
+    public CentralizedPlan createPlan(List<Task> tasks, TimeBudget budget) {
+	return createPlan(tasks, selectRegretInitialSolution(tasks), budget);
+    }
+
+    /**
+     * Searches from the given initial plan of the tasks, for instance the one
+     * of initialSolution(), which is changed by the search.
+     */
+    public CentralizedPlan createPlan(List<Task> tasks,
+	    CentralizedPlan initialPlan, TimeBudget budget) {
+	if (parallelism > 1) {
+	    pool = new ForkJoinPool(parallelism);
+	}
+	budget.startSearch();
+	try {
+	    if (numberOfStarts > 1) {
+		return multiStartPlan(tasks, initialPlan, budget);
+	    }
+	    return search(initialPlan, budget,
+		    new AtomicReference<CentralizedPlan>());
+	} finally {
+	    budget.endSearch();
+	    if (pool != null) {
+		pool.shutdown();
+		pool = null;
+	    }
+	}
+    }
+
+    /**
+     * @return the initial solution of the search, for instance to measure how
+     *         long materializing the plans takes
+     */
+    public CentralizedPlan initialSolution(List<Task> tasks) {
+	return selectRegretInitialSolution(tasks);
+    }
+
+    /**
+     * Runs numberOfStarts searches on a thread pool, each with its own random
+     * generator and initial solution (the first one from the given initial
+     * plan, the others from the tasks in a random order). The searches share
+     * the best plan found so far, and all stop at the end of the search given
+     * by the budget.
+     * 
+     * @return the best plan found by all searches
+     */
+    private CentralizedPlan multiStartPlan(final List<Task> tasks,
+	    final CentralizedPlan initialPlan, final TimeBudget budget) {
+	final AtomicReference<CentralizedPlan> bestPlan = new AtomicReference<CentralizedPlan>();
+	int numberOfThreads = Math.min(numberOfStarts, Runtime.getRuntime()
+		.availableProcessors());
+	ExecutorService executor = Executors
+		.newFixedThreadPool(numberOfThreads);
+	try {
+	    List<Future<CentralizedPlan>> trajectories = new ArrayList<Future<CentralizedPlan>>();
+	    for (int start = 0; start < numberOfStarts; ++start) {
+		// spread the seeds, so that the random generators of the
+		// trajectories are not correlated
+		final StochasticLocalSearch trajectory = new StochasticLocalSearch(
+			this, seed + start * 0x9E3779B97F4A7C15L);
+		final boolean firstStart = start == 0;
+		Callable<CentralizedPlan> search = new Callable<CentralizedPlan>() {
+
+		    @Override
+		    public CentralizedPlan call() {
+			CentralizedPlan startPlan = firstStart ? initialPlan
+				: trajectory.selectRandomInitialSolution(tasks);
+			return trajectory.search(startPlan, budget, bestPlan);
+		    }
+		};
+		trajectories.add(executor.submit(search));
+	    }
+
+	    for (Future<CentralizedPlan> trajectory : trajectories) {
+		trajectory.get();
+	    }
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof RuntimeException) {
+		throw (RuntimeException) e.getCause();
+	    }
+	    throw new IllegalStateException(e.getCause());
+	} finally {
+	    executor.shutdownNow();
+	}
+
+	stochasticLocalSearchStopCause = "Best of " + numberOfStarts
+		+ " starts, each stopped by the time budget or after "
+		+ COUNTDOWN + " steps with no improvement.";
+	return bestPlan.get();
+    }
+
+    /**
+     * Improves the plan until the end of the search given by the budget, or
+     * with the STOCHASTIC rule until no improvement was found for COUNTDOWN
+     * steps. The best plan found is also offered to bestPlanShared.
+     * 
+     * @return the best plan found by this search
+     */
+    private CentralizedPlan search(CentralizedPlan plan, TimeBudget budget,
+	    AtomicReference<CentralizedPlan> bestPlanShared) {
+	routeProfiles = new RouteProfile[vehicles.size()];
+	for (int vehicle = 0; vehicle < vehicles.size(); ++vehicle) {
+	    routeProfiles[vehicle] = new RouteProfile(plan.numberOfTasks());
+	}
+	relocateProfile = new RouteProfile(plan.numberOfTasks());
+	newRoute = new int[2 * plan.numberOfTasks()];
+	moves = new MoveList();
+	offsets = new int[2 * plan.numberOfTasks() + 1];
+	// the initial plan is the best one until a step improves on it
+	CentralizedPlan bestPlan = plan.clone();
+	MoveSelection selection = createMoveSelection();
+	selection.start(plan, budget);
+	bestPlanSoFar = plan.clone();
 
 	boolean timedOut = false;
 	boolean noImprovement = false;
 	int countDown = COUNTDOWN;
-	double minimumCostSoFar = Double.MAX_VALUE;
+	double minimumCostSoFar = bestPlan.cost();
+	long longestStep = 0;
 
 	while (!timedOut && !noImprovement) {
-	    // [perform a clone(), because otherwise, weird stuff happens]
-	    CentralizedPlan previousPlan = plan.clone();
-
-	    Set<CentralizedPlan> neighbourPlans = chooseNeighbours(previousPlan);
-	    plan = localChoice(neighbourPlans, previousPlan);
-
-	    // check if the search will be stopped because of timeout
-	    long time = System.currentTimeMillis();
-	    long duration = time - time_start;
+	    long stepStartTime = System.nanoTime();
+
+	    // the plan is changed in place by the chosen move, the
+	    // neighbours are never built
+	    chooseNeighbours(plan, moves);
+	    rememberBestNeighbour(plan, moves);
+	    int move = selection.choose(plan, routeProfiles, moves,
+		    minimumCostSoFar);
+	    if (move != MoveList.NONE) {
+		selection.moved(routeProfiles, moves, move);
+		applyMove(plan, moves, move);
+		// the full cost is only computed for the accepted plan
+		plan.updateCost();
+	    }
 
-	    // stop some ms before the timeout, because we do not want to
-	    // effectively timeout (and throw a TimeOutException)
-	    int margin = 1000;
-	    if (duration >= timeout - margin) {
+	    // check if the search will be stopped because of timeout: one
+	    // more step must leave the time to materialize the plans
+	    longestStep = Math.max(longestStep, System.nanoTime()
+		    - stepStartTime);
+	    if (!budget.hasTimeFor(longestStep)) {
 		timedOut = true;
-		stochasticLocalSearchStopCause = "Timeout reached: " + timeout
-			+ " ms.";
+		stochasticLocalSearchStopCause = "Time budget reached: "
+			+ budget.timeLeft() + " ms left of the timeout.";
 	    }
 
 	    // check if the search will be stopped because there was no
@@ -83,55 +319,51 @@ public class StochasticLocalSearch {
 		minimumCostSoFar = plan.cost();
 		bestPlan = plan.clone();
 	    }
-	    if (countDown == 0) {
+	    // the other rules take worse plans on purpose, and use the whole
+	    // time
+	    if (countDown == 0 && metaheuristic == Metaheuristic.STOCHASTIC) {
 		noImprovement = true;
 		stochasticLocalSearchStopCause = "No improvement after "
 			+ COUNTDOWN + " steps.";
 	    }
 	}
 
-	if (bestPlan.cost() <= bestPlanSoFar.cost()) {
-	    return bestPlan;
-	} else {
-	    return bestPlanSoFar;
+	if (bestPlan.cost() > bestPlanSoFar.cost()) {
+	    bestPlan = bestPlanSoFar;
 	}
+	offerBestPlan(bestPlanShared, bestPlan);
+	return bestPlan;
     }
 
-    private CentralizedPlan localChoice(Set<CentralizedPlan> plans,
-	    CentralizedPlan previousPlan) {
-
-	Random random = new Random();
-	double p1 = probabilityPickMinimumPlan;
-	double p2 = p1 + probabilityPickOld;
-	double p = random.nextDouble();
-
-	List<CentralizedPlan> plansList = new ArrayList<CentralizedPlan>(plans);
-
-	// remember the best plan so far found throughout the whole SLS
-	List<CentralizedPlan> minimumCostPlans = getMinimumCostPlans(plansList,
-		previousPlan);
-	double minCost = bestPlanSoFar.cost();
-	for (CentralizedPlan plan : minimumCostPlans) {
-	    if (plan.cost() < minCost) {
-		minCost = plan.cost();
-		bestPlanSoFar = plan;
+    /**
+     * Replaces the shared best plan by the plan if it is cheaper. The plan
+     * must not be changed afterwards, since other searches may read it.
+     */
+    private static void offerBestPlan(
+	    AtomicReference<CentralizedPlan> bestPlanShared,
+	    CentralizedPlan plan) {
+	CentralizedPlan bestPlan;
+	do {
+	    bestPlan = bestPlanShared.get();
+	    if (bestPlan != null && bestPlan.cost() <= plan.cost()) {
+		return;
 	    }
-	}
+	} while (!bestPlanShared.compareAndSet(bestPlan, plan));
+    }
 
-	if (plans.isEmpty() || (p1 < p && p <= p2)) {
-	    return previousPlan;
-	} else if (p <= p1) {
-	    CentralizedPlan minimumCostPlan;
-	    if (minimumCostPlans.size() == 1) {
-		minimumCostPlan = minimumCostPlans.get(0);
-	    } else {
-		int r = random.nextInt(minimumCostPlans.size());
-		minimumCostPlan = minimumCostPlans.get(r);
+    /**
+     * Remembers the best neighbour of the plan in bestPlanSoFar, if it is the
+     * best plan found so far throughout the whole SLS.
+     */
+    private void rememberBestNeighbour(CentralizedPlan plan, MoveList moves) {
+	int minimumCostMove = moves.minimumCostMove(random);
+	if (minimumCostMove != MoveList.NONE) {
+	    double minCost = plan.cost() + moves.delta(minimumCostMove);
+	    if (minCost < bestPlanSoFar.cost()) {
+		bestPlanSoFar = plan.clone();
+		applyMove(bestPlanSoFar, moves, minimumCostMove);
+		bestPlanSoFar.updateCost();
 	    }
-	    return minimumCostPlan;
-	} else {
-	    int r = random.nextInt(plansList.size());
-	    return plansList.get(r);
 	}
     }
 
@@ -162,337 +394,834 @@ public class StochasticLocalSearch {
 
     }
 
-    // initial solution where all tasks are assigned to the largest vehicle
-    private CentralizedPlan selectInitialSolution(List<Task> tasks) {
-	int numberOfVehicles = vehicles.size();
-	LinkedList<Task> tasksList = new LinkedList<Task>(tasks);
+    // initial solution built by the regret-k cheapest insertion of the tasks
+    private CentralizedPlan selectRegretInitialSolution(List<Task> tasks) {
+	return new RegretInsertion(vehicles, new ArrayList<Task>(tasks),
+		REGRET).build();
+    }
 
-	// assign all tasks to the vehicle with the largest capacity
+    // initial solution where all the tasks are carried sequentially by the
+    // largest vehicle, in a random order
+    private CentralizedPlan selectRandomInitialSolution(List<Task> tasks) {
+	List<Task> tasksList = new ArrayList<Task>(tasks);
 	Vehicle largestVehicle = getLargestVehicle();
 
-	// if a task weight exceeds the largest vehicle capacity, then the
-	// problem is unsolvable
 	if (!isSolvable(largestVehicle, tasksList)) {
 	    System.err.println("Error: problem is unsolvable. "
 		    + "Largest task weight exceeds largest vehicle capacity.");
 	    return null;
 	}
 
-	Map<Vehicle, TaskAction> vehicleToFirstTaskAction = new HashMap<Vehicle, TaskAction>();
-	Map<TaskAction, TaskAction> taskActionToTaskAction = new HashMap<TaskAction, TaskAction>();
+	CentralizedPlan plan = new CentralizedPlan(vehicles, tasksList);
+	int vehicle = plan.vehicleIndex(largestVehicle);
+
+	List<Integer> order = new ArrayList<Integer>();
+	for (int task = 0; task < tasksList.size(); ++task) {
+	    order.add(task);
+	}
+	Collections.shuffle(order, random);
+
+	int previousTaskAction = CentralizedPlan.NONE;
+	for (int task : order) {
+	    int taskAction_pickup = CentralizedPlan.pickup(task);
+	    int taskAction_delivery = CentralizedPlan.delivery(task);
+	    plan.setNextTaskAction(vehicle, previousTaskAction, taskAction_pickup);
+	    plan.setNextTaskAction(taskAction_pickup, taskAction_delivery);
+	    plan.setVehicle(task, vehicle);
+	    previousTaskAction = taskAction_delivery;
+	}
 
-	// give the first task to the largest vehicle
-	Task firstTask = tasksList.removeFirst();
-	TaskAction firstTaskaction_pickup = new TaskAction(firstTask,
-		TaskAction.PICK_UP);
-	TaskAction firstTaskaction_delivery = new TaskAction(firstTask,
-		TaskAction.DELIVERY);
+	return plan;
+    }
 
-	vehicleToFirstTaskAction.put(largestVehicle, firstTaskaction_pickup);
+    /**
+     * Lists the moves to the neighbours of the plan, with their change of
+     * cost; only the moves giving a plan that respects the constraints are
+     * kept.
+     */
+    private void chooseNeighbours(CentralizedPlan plan, MoveList moves) {
+	moves.clear();
 
-	taskActionToTaskAction.put(firstTaskaction_pickup,
-		firstTaskaction_delivery);
+	// select the vehicle on which the transformations will be applied
+	int thisVehicle = selectRandomVehicle(plan);
+	if (plan.firstTaskAction(thisVehicle) == CentralizedPlan.NONE) {
+	    // no vehicle has any task assigned to it
+	    return;
+	}
 
-	if (!tasksList.isEmpty()) {
-	    taskActionToTaskAction.put(firstTaskaction_delivery,
-		    new TaskAction(tasksList.getFirst(), TaskAction.PICK_UP));
-	} else {
-	    taskActionToTaskAction.put(firstTaskaction_delivery, null);
+	for (int vehicle = 0; vehicle < vehicles.size(); ++vehicle) {
+	    routeProfiles[vehicle].build(plan, vehicle);
 	}
+	RouteProfile route = routeProfiles[thisVehicle];
+	int length = route.length();
 
-	// do not give any task to the other vehicles
-	for (int i = 0; i < numberOfVehicles; ++i) {
-	    Vehicle vehicle = vehicles.get(i);
-	    if (vehicle != largestVehicle) {
-		vehicleToFirstTaskAction.put(vehicle, null);
+	// applying the 'change first task between vehicles' operator: give the
+	// first task in thisVehicle to thatVehicle
+	int deliveryIndex = route.position(CentralizedPlan
+		.delivery(CentralizedPlan.taskIndex(route.taskAction(0))));
+	for (int thatVehicle = 0; thatVehicle < vehicles.size(); ++thatVehicle) {
+	    // only consider this move if the constraints are respected
+	    // (only the plan for thatVehicle - the 'destination vehicle' -
+	    // needs to be checked)
+	    if (thisVehicle != thatVehicle
+		    && changeFirstTaskBetweenVehiclesRespected(plan,
+			    thisVehicle, thatVehicle)) {
+		moves.add(MoveList.CHANGE_FIRST_TASK_BETWEEN_VEHICLES,
+			thisVehicle, thatVehicle, 0, deliveryIndex,
+			changeFirstTaskBetweenVehiclesDelta(plan, thisVehicle,
+				thatVehicle, route, deliveryIndex));
 	    }
 	}
 
-	// give the remaining tasks to the largest vehicle
-	// by default, the vehicle will pick up and deliver tasks sequentially
-	Task task = null;
-	while (!tasksList.isEmpty()) {
-	    task = tasksList.removeFirst();
-	    taskActionToTaskAction.put(
-		    new TaskAction(task, TaskAction.PICK_UP), new TaskAction(
-			    task, TaskAction.DELIVERY));
-
-	    if (!tasksList.isEmpty()) {
-		Task nextTask = tasksList.getFirst();
-		taskActionToTaskAction.put(new TaskAction(task,
-			TaskAction.DELIVERY), new TaskAction(nextTask,
-			TaskAction.PICK_UP));
+	// applying the 'change task order' operator
+	if (length > 2 && pool != null && length >= PARALLEL_THRESHOLD) {
+	    changeTaskOrderInParallel(plan, route, moves);
+	} else if (length > 2) {
+	    for (int taskActionIndex_1 = 0; taskActionIndex_1 < length - 1; ++taskActionIndex_1) {
+		for (int taskActionIndex_2 = taskActionIndex_1 + 1; taskActionIndex_2 < length; ++taskActionIndex_2) {
+		    // only consider this move if the constraints are respected
+		    // (only the plan for thisVehicle needs to be checked)
+		    if (changeTaskOrderRespected(route, taskActionIndex_1,
+			    taskActionIndex_2)) {
+			moves.add(MoveList.CHANGE_TASK_ORDER, thisVehicle,
+				thisVehicle, taskActionIndex_1,
+				taskActionIndex_2, changeTaskOrderDelta(plan,
+					thisVehicle, route, taskActionIndex_1,
+					taskActionIndex_2));
+		    }
+		}
 	    }
 	}
-	if (task != null) {
-	    taskActionToTaskAction.put(
-		    new TaskAction(task, TaskAction.DELIVERY), null);
+
+	// applying the 'relocate', '2-opt', 'or-opt' and 'cross-exchange'
+	// operators
+	listRelocateMoves(plan, route, moves);
+	listTwoOptMoves(plan, route, moves);
+	listOrOptMoves(plan, route, moves);
+	listCrossExchangeMoves(plan, route, moves);
+    }
+
+    /**
+     * Lists the 'change task order' moves of the route on the fork-join pool,
+     * in the order of the sequential loop of chooseNeighbours(), so that
+     * MoveList.minimumCostMove() breaks the ties in the same way. The feasible
+     * moves of each first index are counted first, to know where each first
+     * index writes its moves; their changes of cost are then computed.
+     */
+    private void changeTaskOrderInParallel(final CentralizedPlan plan,
+	    final RouteProfile route, final MoveList moves) {
+	final int vehicle = route.vehicle();
+	final int length = route.length();
+	final int[] offsets = this.offsets;
+
+	// 1. count the feasible moves of each first index
+	pool.invoke(new RangeTask(new RangeBody() {
+
+	    @Override
+	    public void process(int from, int to) {
+		for (int index_1 = from; index_1 < to; ++index_1) {
+		    int count = 0;
+		    for (int index_2 = index_1 + 1; index_2 < length; ++index_2) {
+			if (changeTaskOrderRespected(route, index_1, index_2)) {
+			    ++count;
+			}
+		    }
+		    offsets[index_1 + 1] = count;
+		}
+	    }
+	}, 0, length - 1));
+	offsets[0] = moves.size();
+	for (int index_1 = 0; index_1 < length - 1; ++index_1) {
+	    offsets[index_1 + 1] += offsets[index_1];
 	}
 
-	return new CentralizedPlan(vehicleToFirstTaskAction,
-		taskActionToTaskAction);
+	// 2. compute the change of cost of the feasible moves
+	moves.resize(offsets[length - 1]);
+	pool.invoke(new RangeTask(new RangeBody() {
+
+	    @Override
+	    public void process(int from, int to) {
+		for (int index_1 = from; index_1 < to; ++index_1) {
+		    int move = offsets[index_1];
+		    for (int index_2 = index_1 + 1; index_2 < length; ++index_2) {
+			if (changeTaskOrderRespected(route, index_1, index_2)) {
+			    moves.set(move++, MoveList.CHANGE_TASK_ORDER,
+				    vehicle, vehicle, index_1, index_2,
+				    changeTaskOrderDelta(plan, vehicle, route,
+					    index_1, index_2));
+			}
+		    }
+		}
+	    }
+	}, 0, length - 1));
     }
 
-    // initial solution where each vehicle is assigned some set of task
-    private CentralizedPlan selectInitialSolution_2(TaskSet tasks) {
-	LinkedList<Task> tasksList = new LinkedList<Task>(tasks);
-	int numberOfVehicles = vehicles.size();
-	Vehicle largestVehicle = getLargestVehicle();
+    /**
+     * Applies one of the moves listed by chooseNeighbours() to the plan, in
+     * place.
+     */
+    private void applyMove(CentralizedPlan plan, MoveList moves, int move) {
+	int vehicle_1 = moves.vehicle_1(move);
+	int vehicle_2 = moves.vehicle_2(move);
+	RouteProfile route = routeProfiles[vehicle_1];
+	switch (moves.type(move)) {
+	case MoveList.CHANGE_FIRST_TASK_BETWEEN_VEHICLES:
+	    changeFirstTaskBetweenVehicles(plan, vehicle_1, vehicle_2, route,
+		    moves.index_2(move));
+	    break;
+	case MoveList.CHANGE_TASK_ORDER:
+	    changeTaskOrder(plan, vehicle_1, route, moves.index_1(move),
+		    moves.index_2(move));
+	    break;
+	case MoveList.RELOCATE:
+	    relocate(plan, vehicle_2, route, moves.index_1(move),
+		    moves.index_2(move), moves.index_3(move));
+	    break;
+	case MoveList.TWO_OPT:
+	    twoOpt(plan, route, moves.index_1(move), moves.index_2(move));
+	    break;
+	case MoveList.OR_OPT:
+	    orOpt(plan, route, moves.index_1(move), moves.index_2(move),
+		    moves.index_3(move));
+	    break;
+	case MoveList.CROSS_EXCHANGE:
+	    crossExchange(plan, route, routeProfiles[vehicle_2],
+		    moves.index_1(move), moves.index_2(move));
+	    break;
+	default:
+	    throw new IllegalArgumentException("Unknown move type "
+		    + moves.type(move));
+	}
+    }
 
-	int i = 0;
+    // [note: checking whether this is a valid transaction is handled
+    // beforehand]
+    // [note: the plan is changed in place; route is the profile of the route
+    // of vehicle_1 before the change, deliveryIndex the index in it of the
+    // delivery of its first task]
+    private void changeFirstTaskBetweenVehicles(CentralizedPlan plan,
+	    int vehicle_1, int vehicle_2, RouteProfile route,
+	    int deliveryIndex) {
 
-	Map<Vehicle, TaskAction> vehicleToFirstTaskAction = new HashMap<Vehicle, TaskAction>();
-	Map<TaskAction, TaskAction> taskActionToTaskAction = new HashMap<TaskAction, TaskAction>();
+	// the pickup and delivery for a task must be transferred together to
+	// the other vehicle (the first task action of a vehicle is inevitably
+	// a pickup action)
+	int taskAction_pickup = route.taskAction(0);
+	int taskAction_delivery = route.taskAction(deliveryIndex);
+	int nextTaskAction_delivery = deliveryIndex + 1 < route.length()
+		? route.taskAction(deliveryIndex + 1) : CentralizedPlan.NONE;
 
-	for (Task task : tasksList) {
-	    TaskAction taskAction_pickup = new TaskAction(task,
-		    TaskAction.PICK_UP);
-	    TaskAction taskAction_delivery = new TaskAction(task,
-		    TaskAction.DELIVERY);
+	// redefine the mapping of the taskActions for vehicle_1
+	if (deliveryIndex == 1) {
+	    plan.setFirstTaskAction(vehicle_1, nextTaskAction_delivery);
+	} else {
+	    plan.setFirstTaskAction(vehicle_1, route.taskAction(1));
+	    plan.setNextTaskAction(route.taskAction(deliveryIndex - 1),
+		    nextTaskAction_delivery);
+	}
 
-	    Vehicle selectedVehicle = null;
-	    if (task.weight <= vehicles.get(i).capacity()) {
-		// give this task to this vehicle, if possible
-		selectedVehicle = vehicles.get(i);
-	    } else {
-		// otherwise, give this task to the largest vehicle
-		selectedVehicle = largestVehicle;
-	    }
-	    taskActionToTaskAction.put(taskAction_delivery,
-		    vehicleToFirstTaskAction.get(selectedVehicle));
-	    vehicleToFirstTaskAction.put(selectedVehicle, taskAction_pickup);
-	    taskActionToTaskAction.put(taskAction_pickup, taskAction_delivery);
+	// redefine the mapping of the taskActions for vehicle_2
+	// (the order of the re-mapping is important!)
+	plan.setNextTaskAction(taskAction_delivery,
+		plan.firstTaskAction(vehicle_2));
+	plan.setFirstTaskAction(vehicle_2, taskAction_pickup);
+	plan.setNextTaskAction(taskAction_pickup, taskAction_delivery);
+	plan.setVehicle(CentralizedPlan.taskIndex(taskAction_pickup),
+		vehicle_2);
+    }
 
-	    i = (i + 1) % numberOfVehicles;
+    /**
+     * The change of cost of changeFirstTaskBetweenVehicles(), from the edges
+     * around the pickup and delivery in the route of vehicle_1 and the first
+     * edge of vehicle_2.
+     */
+    private double changeFirstTaskBetweenVehiclesDelta(CentralizedPlan plan,
+	    int vehicle_1, int vehicle_2, RouteProfile route,
+	    int deliveryIndex) {
+	final int NONE = CentralizedPlan.NONE;
+	int taskAction_pickup = route.taskAction(0);
+	int taskAction_delivery = route.taskAction(deliveryIndex);
+	int nextTaskAction_delivery = deliveryIndex + 1 < route.length()
+		? route.taskAction(deliveryIndex + 1) : NONE;
+
+	// remove the pickup and the delivery from vehicle_1
+	double delta_1;
+	if (deliveryIndex == 1) {
+	    delta_1 = plan.distance(vehicle_1, NONE, nextTaskAction_delivery)
+		    - plan.distance(vehicle_1, NONE, taskAction_pickup)
+		    - plan.distance(vehicle_1, taskAction_pickup,
+			    taskAction_delivery)
+		    - plan.distance(vehicle_1, taskAction_delivery,
+			    nextTaskAction_delivery);
+	} else {
+	    int previousTaskAction_delivery = route
+		    .taskAction(deliveryIndex - 1);
+	    delta_1 = plan.distance(vehicle_1, NONE, route.taskAction(1))
+		    - plan.distance(vehicle_1, NONE, taskAction_pickup)
+		    - plan.distance(vehicle_1, taskAction_pickup,
+			    route.taskAction(1))
+		    + plan.distance(vehicle_1, previousTaskAction_delivery,
+			    nextTaskAction_delivery)
+		    - plan.distance(vehicle_1, previousTaskAction_delivery,
+			    taskAction_delivery)
+		    - plan.distance(vehicle_1, taskAction_delivery,
+			    nextTaskAction_delivery);
 	}
 
-	return new CentralizedPlan(vehicleToFirstTaskAction,
-		taskActionToTaskAction);
+	// insert them at the start of vehicle_2
+	int firstTaskAction_2 = plan.firstTaskAction(vehicle_2);
+	double delta_2 = plan.distance(vehicle_2, NONE, taskAction_pickup)
+		+ plan.distance(vehicle_2, taskAction_pickup,
+			taskAction_delivery)
+		+ plan.distance(vehicle_2, taskAction_delivery,
+			firstTaskAction_2)
+		- plan.distance(vehicle_2, NONE, firstTaskAction_2);
+
+	return delta_1 * vehicles.get(vehicle_1).costPerKm() + delta_2
+		* vehicles.get(vehicle_2).costPerKm();
     }
 
-    private Set<CentralizedPlan> chooseNeighbours(CentralizedPlan previousPlan) {
+    // [note: checking whether this is a valid transaction is handled
+    // beforehand]
+    // [note: the plan is changed in place; route is the profile of the route
+    // of the vehicle before the change]
+    // [note: by design, index_1 < index_2 in the route of the vehicle]
+    private void changeTaskOrder(CentralizedPlan plan, int vehicle,
+	    RouteProfile route, int index_1, int index_2) {
+
+	int taskAction_1 = route.taskAction(index_1);
+	int taskAction_2 = route.taskAction(index_2);
+	int previousTaskAction_1 = index_1 > 0 ? route.taskAction(index_1 - 1)
+		: CentralizedPlan.NONE;
+	int nextTaskAction_2 = index_2 + 1 < route.length()
+		? route.taskAction(index_2 + 1) : CentralizedPlan.NONE;
 
-	Set<CentralizedPlan> neighbourPlans = new HashSet<CentralizedPlan>();
+	// exchange the two tasks
+	if (index_2 == index_1 + 1) {
+	    plan.setNextTaskAction(vehicle, previousTaskAction_1, taskAction_2);
+	    plan.setNextTaskAction(taskAction_2, taskAction_1);
+	    plan.setNextTaskAction(taskAction_1, nextTaskAction_2);
+	} else {
+	    int nextTaskAction_1 = route.taskAction(index_1 + 1);
+	    int previousTaskAction_2 = route.taskAction(index_2 - 1);
+	    plan.setNextTaskAction(vehicle, previousTaskAction_1, taskAction_2);
+	    plan.setNextTaskAction(taskAction_2, nextTaskAction_1);
+	    plan.setNextTaskAction(previousTaskAction_2, taskAction_1);
+	    plan.setNextTaskAction(taskAction_1, nextTaskAction_2);
+	}
+    }
 
-	// select the vehicle on which the transformations will be applied
-	Vehicle thisVehicle = selectRandomVehicle(previousPlan);
-	if (thisVehicle == null) {
-	    System.err
-		    .println("Error: no vehicle selected. No vehicle has any task assigned to it. Returning empty neighbour plans list.");
-	    return neighbourPlans;
+    /**
+     * The change of cost of changeTaskOrder(), from the edges entering and
+     * leaving the two task actions.
+     */
+    private double changeTaskOrderDelta(CentralizedPlan plan, int vehicle,
+	    RouteProfile route, int index_1, int index_2) {
+	int taskAction_1 = route.taskAction(index_1);
+	int taskAction_2 = route.taskAction(index_2);
+	int previousTaskAction_1 = index_1 > 0 ? route.taskAction(index_1 - 1)
+		: CentralizedPlan.NONE;
+	int nextTaskAction_2 = index_2 + 1 < route.length()
+		? route.taskAction(index_2 + 1) : CentralizedPlan.NONE;
+
+	double delta;
+	if (index_2 == index_1 + 1) {
+	    delta = plan.distance(vehicle, previousTaskAction_1, taskAction_2)
+		    + plan.distance(vehicle, taskAction_2, taskAction_1)
+		    + plan.distance(vehicle, taskAction_1, nextTaskAction_2)
+		    - plan.distance(vehicle, previousTaskAction_1, taskAction_1)
+		    - plan.distance(vehicle, taskAction_1, taskAction_2)
+		    - plan.distance(vehicle, taskAction_2, nextTaskAction_2);
+	} else {
+	    int nextTaskAction_1 = route.taskAction(index_1 + 1);
+	    int previousTaskAction_2 = route.taskAction(index_2 - 1);
+	    delta = plan.distance(vehicle, previousTaskAction_1, taskAction_2)
+		    + plan.distance(vehicle, taskAction_2, nextTaskAction_1)
+		    + plan.distance(vehicle, previousTaskAction_2, taskAction_1)
+		    + plan.distance(vehicle, taskAction_1, nextTaskAction_2)
+		    - plan.distance(vehicle, previousTaskAction_1, taskAction_1)
+		    - plan.distance(vehicle, taskAction_1, nextTaskAction_1)
+		    - plan.distance(vehicle, previousTaskAction_2, taskAction_2)
+		    - plan.distance(vehicle, taskAction_2, nextTaskAction_2);
 	}
+	return delta * vehicles.get(vehicle).costPerKm();
+    }
 
-	// applying the 'change first task between vehicles' operator: give the
-	// first task in thisVehicle to thatVehicle
-	for (Vehicle thatVehicle : vehicles) {
-	    if (!thisVehicle.equals(thatVehicle)) {
-
-		// if it exists, the first taskAction will inevitably be a
-		// pickup action
-		TaskAction taskAction = previousPlan.vehicleToFirstTaskAction()
-			.get(thisVehicle);
-
-		if (taskAction != null) {
-		    CentralizedPlan neighbourPlan = changeFirstTaskBetweenVehicles(
-			    previousPlan, thisVehicle, thatVehicle);
-
-		    // [maybe]
-		    // only consider this plan if the constraints are respected
-		    // (only the plan for thatVehicle - the 'destination
-		    // vehicle' - needs to be checked)
-		    if (constraintsRespected(neighbourPlan)) {
-			neighbourPlans.add(neighbourPlan);
+    /**
+     * Lists the 'relocate' moves of a task of the route drawn at random: its
+     * pickup and delivery are taken out of the route and inserted at any
+     * places of the route of any vehicle, this one included.
+     */
+    private void listRelocateMoves(CentralizedPlan plan, RouteProfile route,
+	    MoveList moves) {
+	int vehicle_1 = route.vehicle();
+	int task = CentralizedPlan.taskIndex(route.taskAction(random
+		.nextInt(route.length())));
+	int pickupIndex = route.position(CentralizedPlan.pickup(task));
+	int deliveryIndex = route.position(CentralizedPlan.delivery(task));
+	double removalDelta = removalDelta(plan, route, pickupIndex,
+		deliveryIndex);
+	relocateProfile.build(plan, vehicle_1, task);
+
+	for (int vehicle_2 = 0; vehicle_2 < vehicles.size(); ++vehicle_2) {
+	    RouteProfile target = vehicle_2 == vehicle_1 ? relocateProfile
+		    : routeProfiles[vehicle_2];
+	    for (int index_2 = 0; index_2 <= target.length(); ++index_2) {
+		for (int index_3 = index_2; index_3 <= target.length(); ++index_3) {
+		    // carrying the task further only adds to the loads
+		    if (!relocateRespected(plan, task, target, index_2,
+			    index_3)) {
+			break;
+		    }
+		    // putting the task back at its place is not a move
+		    if (vehicle_2 == vehicle_1 && index_2 == pickupIndex
+			    && index_3 == deliveryIndex - 1) {
+			continue;
 		    }
+		    moves.add(MoveList.RELOCATE, vehicle_1, vehicle_2,
+			    pickupIndex, index_2, index_3, removalDelta
+				    + insertionDelta(plan, task, target,
+					    index_2, index_3));
 		}
 	    }
 	}
+    }
 
-	// applying the 'change task order' operator
-	int length = 0;
-	TaskAction taskAction = previousPlan.vehicleToFirstTaskAction().get(
-		thisVehicle);
-
-	List<TaskAction> taskActionList = new ArrayList<TaskAction>();
-
-	do {
-	    taskActionList.add(taskAction);
-	    taskAction = previousPlan.taskActionToTaskAction().get(taskAction);
-	    length += 1;
-	} while (taskAction != null);
-
-	if (length > 2) {
-	    for (int taskActionIndex_1 = 0; taskActionIndex_1 < length - 1; ++taskActionIndex_1) {
-		TaskAction taskAction_1 = taskActionList.get(taskActionIndex_1);
+    /**
+     * Lists the '2-opt' moves of the route: the task actions between two
+     * indices are done in the reverse order. Reversing two task actions next
+     * to each other is a 'change task order' move.
+     */
+    private void listTwoOptMoves(CentralizedPlan plan, RouteProfile route,
+	    MoveList moves) {
+	int vehicle = route.vehicle();
+	for (int index_1 = 0; index_1 < route.length() - 2; ++index_1) {
+	    // the segments from index_1 holding a whole task would deliver it
+	    // before picking it up
+	    int end = route.closingIndex(index_1);
+	    for (int index_2 = index_1 + 2; index_2 < end; ++index_2) {
+		if (twoOptRespected(route, index_1, index_2)) {
+		    moves.add(MoveList.TWO_OPT, vehicle, vehicle, index_1,
+			    index_2, twoOptDelta(plan, route, index_1,
+				    index_2));
+		}
+	    }
+	}
+    }
 
-		for (int taskActionIndex_2 = taskActionIndex_1 + 1; taskActionIndex_2 < length; ++taskActionIndex_2) {
-		    TaskAction taskAction_2 = taskActionList
-			    .get(taskActionIndex_2);
-
-		    CentralizedPlan neighbourPlan = changeTaskOrder(
-			    previousPlan, thisVehicle, taskAction_1,
-			    taskAction_2);
-		    // [maybe]
-		    // only consider this plan if the constraints are respected
-		    // (only the plan for thisVehicle needs to be checked)
-		    if (constraintsRespected(neighbourPlan)) {
-			neighbourPlans.add(neighbourPlan);
+    /**
+     * Lists the 'or-opt' moves of the route: up to OR_OPT_LENGTH consecutive
+     * task actions are moved, in the same order, to another place of the
+     * route.
+     */
+    private void listOrOptMoves(CentralizedPlan plan, RouteProfile route,
+	    MoveList moves) {
+	int vehicle = route.vehicle();
+	int length = route.length();
+	for (int start = 0; start < length; ++start) {
+	    int last = Math.min(length, start + OR_OPT_LENGTH) - 1;
+	    for (int end = start; end <= last; ++end) {
+		for (int index_3 = 0; index_3 < length; ++index_3) {
+		    if ((index_3 < start || index_3 > end)
+			    && orOptRespected(route, start, end, index_3)) {
+			moves.add(MoveList.OR_OPT, vehicle, vehicle, start,
+				end, index_3, orOptDelta(plan, route, start,
+					end, index_3));
 		    }
 		}
 	    }
 	}
-	return neighbourPlans;
     }
 
-    // [note: checking whether this is a valid transaction is handled
-    // afterwards]
-    private CentralizedPlan changeFirstTaskBetweenVehicles(
-	    CentralizedPlan plan, Vehicle vehicle_1, Vehicle vehicle_2) {
+    /**
+     * Lists the 'cross-exchange' moves between the route and the routes of
+     * the other vehicles: a task of the route and a task of another route
+     * exchange their places.
+     */
+    private void listCrossExchangeMoves(CentralizedPlan plan,
+	    RouteProfile route, MoveList moves) {
+	int vehicle_1 = route.vehicle();
+	for (int vehicle_2 = 0; vehicle_2 < vehicles.size(); ++vehicle_2) {
+	    if (vehicle_2 == vehicle_1) {
+		continue;
+	    }
+	    RouteProfile route_2 = routeProfiles[vehicle_2];
+	    for (int index_1 = 0; index_1 < route.length(); ++index_1) {
+		int taskAction_1 = route.taskAction(index_1);
+		if (CentralizedPlan.status(taskAction_1) != CentralizedPlan.PICK_UP) {
+		    continue;
+		}
+		for (int index_2 = 0; index_2 < route_2.length(); ++index_2) {
+		    int taskAction_2 = route_2.taskAction(index_2);
+		    if (CentralizedPlan.status(taskAction_2) == CentralizedPlan.PICK_UP
+			    && crossExchangeRespected(route, route_2, index_1,
+				    index_2)) {
+			moves.add(MoveList.CROSS_EXCHANGE, vehicle_1,
+				vehicle_2, index_1, index_2,
+				crossExchangeDelta(plan, route, route_2,
+					index_1, index_2));
+		    }
+		}
+	    }
+	}
+    }
 
-	// [perform a clone(), because otherwise, weird stuff happens]
-	CentralizedPlan neighbourPlan = plan.clone();
+    /**
+     * Makes the first length task actions of newRoute the route of the
+     * vehicle.
+     */
+    private void setRoute(CentralizedPlan plan, int vehicle, int length) {
+	int previousTaskAction = CentralizedPlan.NONE;
+	for (int index = 0; index < length; ++index) {
+	    plan.setNextTaskAction(vehicle, previousTaskAction,
+		    newRoute[index]);
+	    previousTaskAction = newRoute[index];
+	}
+	plan.setNextTaskAction(vehicle, previousTaskAction,
+		CentralizedPlan.NONE);
+    }
 
-	// TODO: check if better to compare TaskAction or Task
+    /**
+     * Appends the task actions of the route from index from to index to
+     * (excluded) to the length task actions of newRoute.
+     * 
+     * @return the new length of newRoute
+     */
+    private int appendTaskActions(RouteProfile route, int from, int to,
+	    int length) {
+	for (int index = from; index < to; ++index) {
+	    newRoute[length++] = route.taskAction(index);
+	}
+	return length;
+    }
 
-	// the pickup and delivery for a task must be transferred together to
-	// the other vehicle
-	TaskAction taskAction_pickup = plan.vehicleToFirstTaskAction().get(
-		vehicle_1);
-
-	// We retrieve the position of the delivery (first action, first
-	// vehicle)
-	// and its previous task
-	TaskAction previousTaskAction_delivery = null;
-	TaskAction taskAction_delivery = null;
-
-	// v1 has to deliver the task, so we never reach a nullpointer
-	TaskAction p = plan.taskActionToTaskAction().get(taskAction_pickup);
-	while (!p.task().equals(taskAction_pickup.task())) {
-	    p = plan.taskActionToTaskAction().get(p);
-	}
-	taskAction_delivery = p;
-
-	// while (p != null) {
-	// if (p.task().equals(taskAction_pickup.task())) {
-	// taskAction_delivery = p;
-	// }
-	// p = plan.taskActionToTaskAction().get(p);
-	// }
-
-	TaskAction p2 = plan.taskActionToTaskAction().get(taskAction_pickup);
-
-	while (p2 != null) {
-	    if (taskAction_delivery.equals(neighbourPlan
-		    .taskActionToTaskAction().get(p2))) {
-		previousTaskAction_delivery = p2;
-	    }
-	    p2 = plan.taskActionToTaskAction().get(p2);
+    // [note: checking whether this is a valid transaction is handled
+    // beforehand]
+    // [note: the plan is changed in place; route is the profile of the route
+    // of vehicle_1 before the change, and relocateProfile the profile of this
+    // route without the task]
+    private void relocate(CentralizedPlan plan, int vehicle_2,
+	    RouteProfile route, int pickupIndex, int index_2, int index_3) {
+	int task = CentralizedPlan.taskIndex(route.taskAction(pickupIndex));
+	int vehicle_1 = route.vehicle();
+	RouteProfile target = relocateProfile;
+	int length;
+
+	if (vehicle_2 != vehicle_1) {
+	    length = appendTaskActions(relocateProfile, 0,
+		    relocateProfile.length(), 0);
+	    setRoute(plan, vehicle_1, length);
+	    plan.setVehicle(task, vehicle_2);
+	    target = routeProfiles[vehicle_2];
 	}
 
-	// redefine the mapping of the taskActions for vehicle_1
-	if (taskAction_delivery.equals(neighbourPlan.taskActionToTaskAction()
-		.get(taskAction_pickup))) {
-	    neighbourPlan.setNextTask(vehicle_1, neighbourPlan
-		    .taskActionToTaskAction().get(taskAction_delivery));
+	length = appendTaskActions(target, 0, index_2, 0);
+	newRoute[length++] = CentralizedPlan.pickup(task);
+	length = appendTaskActions(target, index_2, index_3, length);
+	newRoute[length++] = CentralizedPlan.delivery(task);
+	length = appendTaskActions(target, index_3, target.length(), length);
+	setRoute(plan, vehicle_2, length);
+    }
 
+    /**
+     * The change of cost of taking the task actions at pickupIndex and
+     * deliveryIndex out of the route.
+     */
+    private double removalDelta(CentralizedPlan plan, RouteProfile route,
+	    int pickupIndex, int deliveryIndex) {
+	int vehicle = route.vehicle();
+	int taskAction_pickup = route.taskAction(pickupIndex);
+	int taskAction_delivery = route.taskAction(deliveryIndex);
+	int previousTaskAction = route.taskActionOrNone(pickupIndex - 1);
+	int nextTaskAction = route.taskActionOrNone(deliveryIndex + 1);
+
+	double delta;
+	if (deliveryIndex == pickupIndex + 1) {
+	    delta = plan.distance(vehicle, previousTaskAction, nextTaskAction)
+		    - plan.distance(vehicle, previousTaskAction,
+			    taskAction_pickup)
+		    - plan.distance(vehicle, taskAction_pickup,
+			    taskAction_delivery)
+		    - plan.distance(vehicle, taskAction_delivery,
+			    nextTaskAction);
 	} else {
-	    neighbourPlan.setNextTask(vehicle_1, neighbourPlan
-		    .taskActionToTaskAction().get(taskAction_pickup));
+	    int nextTaskAction_pickup = route.taskAction(pickupIndex + 1);
+	    int previousTaskAction_delivery = route
+		    .taskAction(deliveryIndex - 1);
+	    delta = plan.distance(vehicle, previousTaskAction,
+		    nextTaskAction_pickup)
+		    - plan.distance(vehicle, previousTaskAction,
+			    taskAction_pickup)
+		    - plan.distance(vehicle, taskAction_pickup,
+			    nextTaskAction_pickup)
+		    + plan.distance(vehicle, previousTaskAction_delivery,
+			    nextTaskAction)
+		    - plan.distance(vehicle, previousTaskAction_delivery,
+			    taskAction_delivery)
+		    - plan.distance(vehicle, taskAction_delivery,
+			    nextTaskAction);
+	}
+	return delta * vehicles.get(vehicle).costPerKm();
+    }
 
-	    neighbourPlan.setNextTask(
-		    previousTaskAction_delivery,
-		    neighbourPlan.taskActionToTaskAction().get(
-			    taskAction_delivery));
+    /**
+     * The change of cost of inserting the pickup of the task before index_2
+     * and its delivery before index_3 of the route (index_2 <= index_3).
+     */
+    private double insertionDelta(CentralizedPlan plan, int task,
+	    RouteProfile route, int index_2, int index_3) {
+	int vehicle = route.vehicle();
+	int taskAction_pickup = CentralizedPlan.pickup(task);
+	int taskAction_delivery = CentralizedPlan.delivery(task);
+	int previousTaskAction = route.taskActionOrNone(index_2 - 1);
+	int nextTaskAction = route.taskActionOrNone(index_3);
+
+	double delta;
+	if (index_3 == index_2) {
+	    delta = plan.distance(vehicle, previousTaskAction,
+		    taskAction_pickup)
+		    + plan.distance(vehicle, taskAction_pickup,
+			    taskAction_delivery)
+		    + plan.distance(vehicle, taskAction_delivery,
+			    nextTaskAction)
+		    - plan.distance(vehicle, previousTaskAction,
+			    nextTaskAction);
+	} else {
+	    int nextTaskAction_pickup = route.taskAction(index_2);
+	    int previousTaskAction_delivery = route.taskAction(index_3 - 1);
+	    delta = plan.distance(vehicle, previousTaskAction,
+		    taskAction_pickup)
+		    + plan.distance(vehicle, taskAction_pickup,
+			    nextTaskAction_pickup)
+		    - plan.distance(vehicle, previousTaskAction,
+			    nextTaskAction_pickup)
+		    + plan.distance(vehicle, previousTaskAction_delivery,
+			    taskAction_delivery)
+		    + plan.distance(vehicle, taskAction_delivery,
+			    nextTaskAction)
+		    - plan.distance(vehicle, previousTaskAction_delivery,
+			    nextTaskAction);
 	}
+	return delta * vehicles.get(vehicle).costPerKm();
+    }
 
-	// redefine the mapping of the taskActions for vehicle_2
-	// (the order of the re-mapping is important!)
-	neighbourPlan.setNextTask(taskAction_delivery, neighbourPlan
-		.vehicleToFirstTaskAction().get(vehicle_2));
-	neighbourPlan.setNextTask(vehicle_2, taskAction_pickup);
-	neighbourPlan.setNextTask(taskAction_pickup, taskAction_delivery);
+    // [note: checking whether this is a valid transaction is handled
+    // beforehand]
+    // [note: the plan is changed in place; route is the profile of the route
+    // of the vehicle before the change]
+    private void twoOpt(CentralizedPlan plan, RouteProfile route, int index_1,
+	    int index_2) {
+	int length = appendTaskActions(route, 0, index_1, 0);
+	for (int index = index_2; index >= index_1; --index) {
+	    newRoute[length++] = route.taskAction(index);
+	}
+	length = appendTaskActions(route, index_2 + 1, route.length(), length);
+	setRoute(plan, route.vehicle(), length);
+    }
 
-	return neighbourPlan;
+    /**
+     * The change of cost of twoOpt(): the distances between the cities are
+     * symmetric, so that only the edges at the ends of the reversed task
+     * actions change.
+     */
+    private double twoOptDelta(CentralizedPlan plan, RouteProfile route,
+	    int index_1, int index_2) {
+	int vehicle = route.vehicle();
+	int taskAction_1 = route.taskAction(index_1);
+	int taskAction_2 = route.taskAction(index_2);
+	int previousTaskAction_1 = route.taskActionOrNone(index_1 - 1);
+	int nextTaskAction_2 = route.taskActionOrNone(index_2 + 1);
+
+	double delta = plan.distance(vehicle, previousTaskAction_1,
+		taskAction_2)
+		+ plan.distance(vehicle, taskAction_1, nextTaskAction_2)
+		- plan.distance(vehicle, previousTaskAction_1, taskAction_1)
+		- plan.distance(vehicle, taskAction_2, nextTaskAction_2);
+	return delta * vehicles.get(vehicle).costPerKm();
     }
 
     // [note: checking whether this is a valid transaction is handled
-    // afterwards]
-    // [note: by design, taskAction_1 will come before taskAction_2]
-    private CentralizedPlan changeTaskOrder(CentralizedPlan plan,
-	    Vehicle vehicle, TaskAction taskAction_1, TaskAction taskAction_2) {
+    // beforehand]
+    // [note: the plan is changed in place; route is the profile of the route
+    // of the vehicle before the change]
+    private void orOpt(CentralizedPlan plan, RouteProfile route, int start,
+	    int end, int index_3) {
+	int length;
+	if (index_3 < start) {
+	    length = appendTaskActions(route, 0, index_3, 0);
+	    length = appendTaskActions(route, start, end + 1, length);
+	    length = appendTaskActions(route, index_3, start, length);
+	    length = appendTaskActions(route, end + 1, route.length(),
+		    length);
+	} else {
+	    length = appendTaskActions(route, 0, start, 0);
+	    length = appendTaskActions(route, end + 1, index_3 + 1, length);
+	    length = appendTaskActions(route, start, end + 1, length);
+	    length = appendTaskActions(route, index_3 + 1, route.length(),
+		    length);
+	}
+	setRoute(plan, route.vehicle(), length);
+    }
 
-	// [perform a clone(), because otherwise, weird stuff happens]
-	CentralizedPlan neighbourPlan = plan.clone();
+    /**
+     * The change of cost of orOpt(), from the edges at the ends of the moved
+     * task actions and the edge they are inserted in.
+     */
+    private double orOptDelta(CentralizedPlan plan, RouteProfile route,
+	    int start, int end, int index_3) {
+	int vehicle = route.vehicle();
+	int taskAction_start = route.taskAction(start);
+	int taskAction_end = route.taskAction(end);
+	int previousTaskAction = route.taskActionOrNone(start - 1);
+	int nextTaskAction = route.taskActionOrNone(end + 1);
+
+	// the edge the task actions are inserted in is not one of the edges
+	// at their ends, even if index_3 is next to them
+	int taskAction_before;
+	int taskAction_after;
+	if (index_3 < start) {
+	    taskAction_before = route.taskActionOrNone(index_3 - 1);
+	    taskAction_after = route.taskAction(index_3);
+	} else {
+	    taskAction_before = route.taskAction(index_3);
+	    taskAction_after = route.taskActionOrNone(index_3 + 1);
+	}
 
-	TaskAction previousTaskAction_1 = null;
-	TaskAction previousTaskAction_2 = null;
+	double delta = plan.distance(vehicle, previousTaskAction,
+		nextTaskAction)
+		- plan.distance(vehicle, previousTaskAction, taskAction_start)
+		- plan.distance(vehicle, taskAction_end, nextTaskAction)
+		+ plan.distance(vehicle, taskAction_before, taskAction_start)
+		+ plan.distance(vehicle, taskAction_end, taskAction_after)
+		- plan.distance(vehicle, taskAction_before, taskAction_after);
+	return delta * vehicles.get(vehicle).costPerKm();
+    }
 
-	TaskAction taskAction = neighbourPlan.vehicleToFirstTaskAction().get(
-		vehicle);
+    // [note: checking whether this is a valid transaction is handled
+    // beforehand]
+    // [note: the plan is changed in place; route_1 and route_2 are the
+    // profiles of the routes of the two vehicles before the change]
+    private void crossExchange(CentralizedPlan plan, RouteProfile route_1,
+	    RouteProfile route_2, int index_1, int index_2) {
+	int task_1 = CentralizedPlan.taskIndex(route_1.taskAction(index_1));
+	int task_2 = CentralizedPlan.taskIndex(route_2.taskAction(index_2));
+	replaceTask(plan, route_1, task_1, task_2);
+	replaceTask(plan, route_2, task_2, task_1);
+	plan.setVehicle(task_1, route_2.vehicle());
+	plan.setVehicle(task_2, route_1.vehicle());
+    }
 
-	// retrieve previousTaskAction_1 and previousTaskAction_2
-	while (taskAction != null) {
-	    if (taskAction_1.equals(neighbourPlan.taskActionToTaskAction().get(
-		    taskAction))) {
-		previousTaskAction_1 = new TaskAction(taskAction);
-	    }
-	    if (taskAction_2.equals(neighbourPlan.taskActionToTaskAction().get(
-		    taskAction))) {
-		previousTaskAction_2 = new TaskAction(taskAction);
+    /**
+     * Sets the route of the profile, with the pickup and delivery of the task
+     * replaced by those of newTask.
+     */
+    private void replaceTask(CentralizedPlan plan, RouteProfile route,
+	    int task, int newTask) {
+	for (int index = 0; index < route.length(); ++index) {
+	    int taskAction = route.taskAction(index);
+	    if (CentralizedPlan.taskIndex(taskAction) != task) {
+		newRoute[index] = taskAction;
+	    } else if (CentralizedPlan.status(taskAction) == CentralizedPlan.PICK_UP) {
+		newRoute[index] = CentralizedPlan.pickup(newTask);
+	    } else {
+		newRoute[index] = CentralizedPlan.delivery(newTask);
 	    }
-	    taskAction = neighbourPlan.taskActionToTaskAction().get(taskAction);
-	}
-
-	TaskAction nextTaskAction_1 = null;
-	if (neighbourPlan.taskActionToTaskAction().get(taskAction_1) != null) {
-	    nextTaskAction_1 = new TaskAction(neighbourPlan
-		    .taskActionToTaskAction().get(taskAction_1));
 	}
+	setRoute(plan, route.vehicle(), route.length());
+    }
 
-	TaskAction nextTaskAction_2 = null;
-	if (neighbourPlan.taskActionToTaskAction().get(taskAction_2) != null) {
-	    nextTaskAction_2 = new TaskAction(neighbourPlan
-		    .taskActionToTaskAction().get(taskAction_2));
-	}
+    /**
+     * The change of cost of crossExchange(), from the edges around the
+     * replaced task actions in both routes.
+     */
+    private double crossExchangeDelta(CentralizedPlan plan,
+	    RouteProfile route_1, RouteProfile route_2, int index_1,
+	    int index_2) {
+	int task_1 = CentralizedPlan.taskIndex(route_1.taskAction(index_1));
+	int task_2 = CentralizedPlan.taskIndex(route_2.taskAction(index_2));
+	return replaceTaskDelta(plan, route_1, task_1, task_2)
+		+ replaceTaskDelta(plan, route_2, task_2, task_1);
+    }
 
-	// exchange the two tasks
-	if (taskAction_1.equals(plan.vehicleToFirstTaskAction().get(vehicle))) {
-	    if (taskAction_2.equals(nextTaskAction_1)) {
-		neighbourPlan.setNextTask(vehicle, taskAction_2);
-		neighbourPlan.setNextTask(taskAction_2, taskAction_1);
-		neighbourPlan.setNextTask(taskAction_1, nextTaskAction_2);
-	    } else {
-		neighbourPlan.setNextTask(vehicle, taskAction_2);
-		neighbourPlan.setNextTask(previousTaskAction_2, taskAction_1);
-		neighbourPlan.setNextTask(taskAction_2, nextTaskAction_1);
-		neighbourPlan.setNextTask(taskAction_1, nextTaskAction_2);
-	    }
+    /**
+     * The change of cost of replacing the pickup and delivery of the task in
+     * the route by those of newTask.
+     */
+    private double replaceTaskDelta(CentralizedPlan plan, RouteProfile route,
+	    int task, int newTask) {
+	int vehicle = route.vehicle();
+	int taskAction_pickup = CentralizedPlan.pickup(task);
+	int taskAction_delivery = CentralizedPlan.delivery(task);
+	int newTaskAction_pickup = CentralizedPlan.pickup(newTask);
+	int newTaskAction_delivery = CentralizedPlan.delivery(newTask);
+	int pickupIndex = route.position(taskAction_pickup);
+	int deliveryIndex = route.position(taskAction_delivery);
+	int previousTaskAction = route.taskActionOrNone(pickupIndex - 1);
+	int nextTaskAction = route.taskActionOrNone(deliveryIndex + 1);
+
+	double delta;
+	if (deliveryIndex == pickupIndex + 1) {
+	    delta = plan.distance(vehicle, previousTaskAction,
+		    newTaskAction_pickup)
+		    + plan.distance(vehicle, newTaskAction_pickup,
+			    newTaskAction_delivery)
+		    + plan.distance(vehicle, newTaskAction_delivery,
+			    nextTaskAction)
+		    - plan.distance(vehicle, previousTaskAction,
+			    taskAction_pickup)
+		    - plan.distance(vehicle, taskAction_pickup,
+			    taskAction_delivery)
+		    - plan.distance(vehicle, taskAction_delivery,
+			    nextTaskAction);
 	} else {
-	    if (taskAction_2.equals(nextTaskAction_1)) {
-		neighbourPlan.setNextTask(previousTaskAction_1, taskAction_2);
-		neighbourPlan.setNextTask(taskAction_2, taskAction_1);
-		neighbourPlan.setNextTask(taskAction_1, nextTaskAction_2);
-	    } else {
-		neighbourPlan.setNextTask(previousTaskAction_1, taskAction_2);
-		neighbourPlan.setNextTask(previousTaskAction_2, taskAction_1);
-		neighbourPlan.setNextTask(taskAction_2, nextTaskAction_1);
-		neighbourPlan.setNextTask(taskAction_1, nextTaskAction_2);
-	    }
+	    int nextTaskAction_pickup = route.taskAction(pickupIndex + 1);
+	    int previousTaskAction_delivery = route
+		    .taskAction(deliveryIndex - 1);
+	    delta = plan.distance(vehicle, previousTaskAction,
+		    newTaskAction_pickup)
+		    + plan.distance(vehicle, newTaskAction_pickup,
+			    nextTaskAction_pickup)
+		    - plan.distance(vehicle, previousTaskAction,
+			    taskAction_pickup)
+		    - plan.distance(vehicle, taskAction_pickup,
+			    nextTaskAction_pickup)
+		    + plan.distance(vehicle, previousTaskAction_delivery,
+			    newTaskAction_delivery)
+		    + plan.distance(vehicle, newTaskAction_delivery,
+			    nextTaskAction)
+		    - plan.distance(vehicle, previousTaskAction_delivery,
+			    taskAction_delivery)
+		    - plan.distance(vehicle, taskAction_delivery,
+			    nextTaskAction);
 	}
+	return delta * vehicles.get(vehicle).costPerKm();
+    }
 
-	return neighbourPlan;
+    /**
+     * @return a new rule of the metaheuristic, drawing from the random
+     *         generator of this search
+     */
+    private MoveSelection createMoveSelection() {
+	switch (metaheuristic) {
+	case SIMULATED_ANNEALING:
+	    return new SimulatedAnnealing(random);
+	case TABU_SEARCH:
+	    return new TabuSearch(random);
+	default:
+	    return new StochasticChoice(random, probabilityPickMinimumPlan,
+		    probabilityPickOld);
+	}
     }
 
-    private Vehicle selectRandomVehicle(CentralizedPlan plan) {
-	Random random = new Random();
+    private int selectRandomVehicle(CentralizedPlan plan) {
 	int numberOfVehicles = vehicles.size();
 	int count = 0;
-	Vehicle vehicle;
+	int vehicle;
 
 	do {
-	    int r = random.nextInt(numberOfVehicles);
-	    vehicle = vehicles.get(r);
+	    vehicle = random.nextInt(numberOfVehicles);
 	    ++count;
-	} while (plan.vehicleToFirstTaskAction().get(vehicle) == null
+	} while (plan.firstTaskAction(vehicle) == CentralizedPlan.NONE
 		&& count < numberOfVehicles);
 	// 'count' is used to break if no vehicle has a first task assigned to
 	// it
@@ -501,35 +1230,154 @@ public class StochasticLocalSearch {
     }
 
     /**
-     * Returns either the unique/list smallest cost plan(s) between all plans.
-     * 
-     * @param plans
-     * @param currentPlan
-     * @return a list of one or multiple lower cost plans
-     */
-    private List<CentralizedPlan> getMinimumCostPlans(
-	    List<CentralizedPlan> plans, CentralizedPlan currentPlan) {
-
-	// all the neighbouring plans may have a cost worse than the current
-	// plan
-	double minimumCost = Double.MAX_VALUE;
-
-	List<CentralizedPlan> minimumCostPlans = new ArrayList<CentralizedPlan>();
-
-	for (CentralizedPlan plan : plans) {
-	    if (plan.cost() < minimumCost) {
-		minimumCost = plan.cost();
-		minimumCostPlans.clear();
-		minimumCostPlans.add(plan);
-	    } else if (plan.cost() == minimumCost) {
-		minimumCostPlans.add(plan);
+     * Whether the plan given by changeFirstTaskBetweenVehicles() respects the
+     * constraints: vehicle_1 only loses a task, and vehicle_2 carries the task
+     * alone before its former route.
+     */
+    private boolean changeFirstTaskBetweenVehiclesRespected(
+	    CentralizedPlan plan, int vehicle_1, int vehicle_2) {
+	Task task = plan.task(plan.firstTaskAction(vehicle_1));
+	return task.weight <= vehicles.get(vehicle_2).capacity();
+    }
+
+    /**
+     * Whether the plan given by changeTaskOrder() respects the constraints,
+     * from the profile of the route.
+     */
+    private boolean changeTaskOrderRespected(RouteProfile route, int index_1,
+	    int index_2) {
+	int taskAction_1 = route.taskAction(index_1);
+	int taskAction_2 = route.taskAction(index_2);
+	int task_1 = CentralizedPlan.taskIndex(taskAction_1);
+	int task_2 = CentralizedPlan.taskIndex(taskAction_2);
+
+	// taskAction_1 moves later: a pickup must stay before its delivery
+	if (CentralizedPlan.status(taskAction_1) == CentralizedPlan.PICK_UP
+		&& route.position(CentralizedPlan.delivery(task_1))
+			<= index_2) {
+	    return false;
+	}
+	// taskAction_2 moves earlier: a delivery must stay after its pickup
+	if (CentralizedPlan.status(taskAction_2) == CentralizedPlan.DELIVERY
+		&& route.position(CentralizedPlan.pickup(task_2)) >= index_1) {
+	    return false;
+	}
+
+	// the load after the task actions from index_1 to index_2 (excluded)
+	// changes by the difference of the weights of the two task actions,
+	// the other loads do not change
+	int change = route.weight(index_2) - route.weight(index_1);
+	int capacity = vehicles.get(route.vehicle()).capacity();
+	return change <= 0
+		|| route.maxLoad(index_1, index_2 - 1) + change <= capacity;
+    }
+
+    /**
+     * Whether the plan given by relocate() respects the constraints: only the
+     * route the task is inserted in needs to be checked, the task being
+     * carried from before index_2 to before index_3.
+     */
+    private boolean relocateRespected(CentralizedPlan plan, int task,
+	    RouteProfile route, int index_2, int index_3) {
+	int weight = plan.task(CentralizedPlan.pickup(task)).weight;
+	int capacity = vehicles.get(route.vehicle()).capacity();
+	return route.loadBefore(index_2) + weight <= capacity
+		&& route.maxLoad(index_2, index_3 - 1) + weight <= capacity;
+    }
+
+    /**
+     * Whether the plan given by twoOpt() respects the constraints, from the
+     * profile of the route.
+     */
+    private boolean twoOptRespected(RouteProfile route, int index_1,
+	    int index_2) {
+	// a task picked up and delivered between index_1 and index_2 would be
+	// delivered before its pickup
+	if (route.closingIndex(index_1) <= index_2) {
+	    return false;
+	}
+
+	// once reversed, the load after the task action at index i of the
+	// segment is loadBefore(index_1) + load(index_2) - loadBefore(i)
+	int loadBefore = route.loadBefore(index_1);
+	int minimumLoadBefore = Math.min(loadBefore,
+		route.minLoad(index_1, index_2 - 1));
+	int capacity = vehicles.get(route.vehicle()).capacity();
+	return loadBefore + route.load(index_2) - minimumLoadBefore
+		<= capacity;
+    }
+
+    /**
+     * Whether the plan given by orOpt() respects the constraints, from the
+     * profile of the route.
+     */
+    private boolean orOptRespected(RouteProfile route, int start, int end,
+	    int index_3) {
+	// the change of load over the moved task actions, and the largest
+	// load among them above the load before them
+	int loadBefore = route.loadBefore(start);
+	int change = route.load(end) - loadBefore;
+	int maximumLoad = route.maxLoad(start, end) - loadBefore;
+	int capacity = vehicles.get(route.vehicle()).capacity();
+
+	for (int index = start; index <= end; ++index) {
+	    int taskAction = route.taskAction(index);
+	    int task = CentralizedPlan.taskIndex(taskAction);
+	    if (index_3 < start) {
+		// moving earlier: a delivery must stay after its pickup
+		int pickupIndex = route.position(CentralizedPlan.pickup(task));
+		if (CentralizedPlan.status(taskAction) == CentralizedPlan.DELIVERY
+			&& index_3 <= pickupIndex && pickupIndex < start) {
+		    return false;
+		}
+	    } else {
+		// moving later: a pickup must stay before its delivery
+		int deliveryIndex = route.position(CentralizedPlan
+			.delivery(task));
+		if (CentralizedPlan.status(taskAction) == CentralizedPlan.PICK_UP
+			&& end < deliveryIndex && deliveryIndex <= index_3) {
+		    return false;
+		}
 	    }
 	}
-	return minimumCostPlans;
+
+	// the task actions the moved ones pass over change their loads by
+	// change, the moved ones start from the load at their new place
+	if (index_3 < start) {
+	    return route.loadBefore(index_3) + maximumLoad <= capacity
+		    && (change <= 0 || route.maxLoad(index_3, start - 1)
+			    + change <= capacity);
+	}
+	return route.load(index_3) - change + maximumLoad <= capacity
+		&& (change >= 0 || route.maxLoad(end + 1, index_3) - change
+			<= capacity);
+    }
+
+    /**
+     * Whether the plan given by crossExchange() respects the constraints:
+     * each vehicle carries the task of the other vehicle over the task
+     * actions its own task was carried over.
+     */
+    private boolean crossExchangeRespected(RouteProfile route_1,
+	    RouteProfile route_2, int index_1, int index_2) {
+	int deliveryIndex_1 = route_1.position(CentralizedPlan
+		.delivery(CentralizedPlan.taskIndex(route_1
+			.taskAction(index_1))));
+	int deliveryIndex_2 = route_2.position(CentralizedPlan
+		.delivery(CentralizedPlan.taskIndex(route_2
+			.taskAction(index_2))));
+	int change = route_2.weight(index_2) - route_1.weight(index_1);
+	int capacity_1 = vehicles.get(route_1.vehicle()).capacity();
+	int capacity_2 = vehicles.get(route_2.vehicle()).capacity();
+
+	return (change <= 0 || route_1.maxLoad(index_1, deliveryIndex_1 - 1)
+		+ change <= capacity_1)
+		&& (change >= 0 || route_2.maxLoad(index_2,
+			deliveryIndex_2 - 1) - change <= capacity_2);
     }
 
     public boolean constraintsRespected(CentralizedPlan plan) {
-	for (Vehicle vehicle : vehicles) {
+	for (int vehicle = 0; vehicle < vehicles.size(); ++vehicle) {
 	    if (!constraintsRespected(plan, vehicle)) {
 		return false;
 	    }
@@ -537,50 +1385,37 @@ public class StochasticLocalSearch {
 	return true;
     }
 
-    public boolean constraintsRespected(CentralizedPlan plan, Vehicle vehicle) {
+    public boolean constraintsRespected(CentralizedPlan plan, int vehicle) {
 	return capacityRespected(plan, vehicle)
 		&& pickupAndDeliveryOrderRespected(plan, vehicle);
     }
 
-    public boolean capacityRespected(CentralizedPlan plan, Vehicle vehicle) {
-	int capacity = vehicle.capacity();
-	double load = 0;
-	TaskAction taskAction = plan.vehicleToFirstTaskAction().get(vehicle);
-
-	while (taskAction != null) {
-	    if (taskAction.status() == TaskAction.PICK_UP) {
-		load += taskAction.task().weight;
-	    } else if (taskAction.status() == TaskAction.DELIVERY) {
-		load -= taskAction.task().weight;
-	    }
+    public boolean capacityRespected(CentralizedPlan plan, int vehicle) {
+	RouteProfile route = new RouteProfile(plan.numberOfTasks());
+	route.build(plan, vehicle);
+	int capacity = vehicles.get(vehicle).capacity();
 
-	    // this plan does not respect the capacity constraint
-	    if (load > capacity) {
-		return false;
-	    }
-	    taskAction = plan.taskActionToTaskAction().get(taskAction);
-	}
-	return true;
+	// this plan does not respect the capacity constraint
+	return route.maxLoad(0, route.length() - 1) <= capacity;
     }
 
     public boolean pickupAndDeliveryOrderRespected(CentralizedPlan plan,
-	    Vehicle vehicle) {
-
-	Set<Task> pickedUpTasks = new HashSet<Task>();
-	TaskAction taskAction = plan.vehicleToFirstTaskAction().get(vehicle);
-
-	while (taskAction != null) {
-	    if (taskAction.status() == TaskAction.PICK_UP) {
-		// remember which tasks have been picked up
-		pickedUpTasks.add(taskAction.task());
-	    } else if (taskAction.status() == TaskAction.DELIVERY
-		    && !pickedUpTasks.contains(taskAction.task())) {
-		// check whether the task has been picked up beforehand:
-		// if not, then the pick up and delivery order constraint is not
-		// respected for this plan
+	    int vehicle) {
+	RouteProfile route = new RouteProfile(plan.numberOfTasks());
+	route.build(plan, vehicle);
+
+	for (int index = 0; index < route.length(); ++index) {
+	    int taskAction = route.taskAction(index);
+	    int taskAction_pickup = CentralizedPlan.pickup(CentralizedPlan
+		    .taskIndex(taskAction));
+	    // check whether the task has been picked up beforehand:
+	    // if not, then the pick up and delivery order constraint is not
+	    // respected for this plan
+	    if (CentralizedPlan.status(taskAction) == CentralizedPlan.DELIVERY
+		    && (!route.contains(taskAction_pickup) || route
+			    .position(taskAction_pickup) > index)) {
 		return false;
 	    }
-	    taskAction = plan.taskActionToTaskAction().get(taskAction);
 	}
 	return true;
     }
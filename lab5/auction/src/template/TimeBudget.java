@@ -0,0 +1,135 @@
+package template;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time budget of one call to the agent, from its start to its timeout. The
+ * time is split between the setup (everything before the search), the
+ * stochastic local search and the materialization of the plans of the
+ * vehicles (buildPlan()), each measured with System.nanoTime().
+ * <p>
+ * Instead of stopping at a fixed margin before the timeout, the search asks
+ * the budget after each step whether one more step still leaves the time to
+ * materialize the plans. The step is predicted to last as long as the longest
+ * step so far, and the materialization as long as the estimate given by the
+ * caller. Both predictions are multiplied by SAFETY_FACTOR, and
+ * MINIMUM_MARGIN is always kept for the pauses of the JVM.
+ *
+ */
+public class TimeBudget {
+
+    // margin (ms) always kept before the timeout
+    private static final long MINIMUM_MARGIN = 100;
+    // the predicted durations are multiplied by this factor
+    private static final int SAFETY_FACTOR = 2;
+
+    private static final long NOT_MEASURED = -1;
+
+    private final long timeout;
+    private final long startTime;
+    private final long endTime;
+
+    private long materializationEstimate = 0;
+
+    private long searchStartTime = NOT_MEASURED;
+    private long searchEndTime = NOT_MEASURED;
+    private long materializationStartTime = NOT_MEASURED;
+    private long materializationEndTime = NOT_MEASURED;
+
+    /**
+     * Starts the budget, and its setup.
+     * 
+     * @param timeout
+     *            the time (ms) allowed from now
+     */
+    public TimeBudget(long timeout) {
+	this.timeout = timeout;
+	this.startTime = System.nanoTime();
+	this.endTime = startTime + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Sets the predicted duration (ns) of the materialization of the plans,
+     * 0 if the plans are not materialized.
+     */
+    public void setMaterializationEstimate(long materializationEstimate) {
+	this.materializationEstimate = materializationEstimate;
+    }
+
+    public void startSearch() {
+	searchStartTime = System.nanoTime();
+    }
+
+    public void endSearch() {
+	searchEndTime = System.nanoTime();
+    }
+
+    public void startMaterialization() {
+	materializationStartTime = System.nanoTime();
+    }
+
+    public void endMaterialization() {
+	materializationEndTime = System.nanoTime();
+    }
+
+    /**
+     * @return the System.nanoTime() at which the search must stop, with
+     *         steps of no duration
+     */
+    public long searchDeadline() {
+	return endTime - TimeUnit.MILLISECONDS.toNanos(MINIMUM_MARGIN)
+		- SAFETY_FACTOR * materializationEstimate;
+    }
+
+    /**
+     * Whether one more step of the search, lasting at most step ns, still
+     * leaves the time to materialize the plans before the timeout. It may be
+     * called by several searches at the same time.
+     */
+    public boolean hasTimeFor(long step) {
+	return System.nanoTime() + SAFETY_FACTOR * step <= searchDeadline();
+    }
+
+    /**
+     * @return the time (ms) spent before the search
+     */
+    public long setupTime() {
+	return duration(startTime, searchStartTime);
+    }
+
+    /**
+     * @return the time (ms) spent by the search
+     */
+    public long searchTime() {
+	return duration(searchStartTime, searchEndTime);
+    }
+
+    /**
+     * @return the time (ms) spent materializing the plans
+     */
+    public long materializationTime() {
+	return duration(materializationStartTime, materializationEndTime);
+    }
+
+    /**
+     * @return the time (ms) left before the timeout
+     */
+    public long timeLeft() {
+	return TimeUnit.NANOSECONDS.toMillis(endTime - System.nanoTime());
+    }
+
+    private static long duration(long start, long end) {
+	if (start == NOT_MEASURED || end == NOT_MEASURED) {
+	    return NOT_MEASURED;
+	}
+	return TimeUnit.NANOSECONDS.toMillis(end - start);
+    }
+
+    @Override
+    public String toString() {
+	return "setup " + setupTime() + " ms, search " + searchTime()
+		+ " ms, plans " + materializationTime() + " ms (predicted "
+		+ TimeUnit.NANOSECONDS.toMillis(materializationEstimate)
+		+ " ms), " + timeLeft() + " ms left of " + timeout + " ms";
+    }
+}